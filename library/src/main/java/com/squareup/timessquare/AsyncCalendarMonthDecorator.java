@@ -0,0 +1,35 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decorates a month with data that is too slow to fetch on the UI thread.  When a month is bound,
+ * its cells are decorated with placeholders right away and the data is loaded on the executor the
+ * decorator was set with.  The loaded data is only applied if the month view is still showing
+ * that month: loads for views that were bound to another month or recycled are cancelled.
+ *
+ * @param <T> the data loaded for a month.
+ */
+public interface AsyncCalendarMonthDecorator<T> {
+    /**
+     * Decorates the cells of {@code month} while its data loads.  Called on the UI thread, like
+     * {@link CalendarMonthDecorator#decorate}.
+     */
+    void decoratePlaceholders(MonthDescriptor month, List<Date> dates,
+                              List<CalendarCellView> cellViews);
+
+    /**
+     * Loads the data for {@code dates}, the days of {@code month}'s grid being decorated.  Called
+     * on the executor; must not touch any view.
+     */
+    T load(MonthDescriptor month, List<Date> dates);
+
+    /**
+     * Decorates the cells of {@code month} with the {@code data} loaded for it.  Called on the UI
+     * thread, like {@link CalendarMonthDecorator#decorate}.
+     */
+    void decorate(MonthDescriptor month, List<Date> dates, List<CalendarCellView> cellViews,
+                  T data);
+}
@@ -2,6 +2,17 @@ package com.squareup.timessquare;
 
 import java.util.Date;
 
+/**
+ * Decorates a cell with the data of the day it shows.
+ */
 public interface CalendarCellDecorator {
+    /**
+     * Decorates {@code cellView}, which shows {@code date}.  Called when the cell starts showing
+     * the day, when the day's decorations are invalidated, and when its selectable state may have
+     * changed: after {@link CalendarPickerView#invalidateSelectableDates(Date, Date)} or
+     * {@link CalendarPickerView#setDateSelectableFilter}.  Not called when the day is selected or
+     * highlighted: the cell's state already reflects those.  Decorations that depend on anything
+     * else must be refreshed with {@link CalendarPickerView#invalidateDecorations(Date, Date)}.
+     */
     void decorate(CalendarCellView cellView, Date date);
 }
@@ -10,116 +10,164 @@ import android.widget.TextView;
 import com.squareup.timessquare.MonthCellDescriptor.RangeState;
 
 public class CalendarCellView extends FrameLayout {
-    private static final int[] STATE_SELECTABLE = {
-            R.attr.tsquare_state_selectable
-    };
-    private static final int[] STATE_CURRENT_MONTH = {
-            R.attr.tsquare_state_current_month
-    };
-    private static final int[] STATE_TODAY = {
-            R.attr.tsquare_state_today
-    };
-    private static final int[] STATE_HIGHLIGHTED = {
-            R.attr.tsquare_state_highlighted
-    };
-    private static final int[] STATE_RANGE_FIRST = {
-            R.attr.tsquare_state_range_first
-    };
-    private static final int[] STATE_RANGE_MIDDLE = {
-            R.attr.tsquare_state_range_middle
-    };
-    private static final int[] STATE_RANGE_LAST = {
+    // A cell's states, packed into an int by cellState().
+    static final int STATE_SELECTABLE = 1;
+    static final int STATE_CURRENT_MONTH = 1 << 1;
+    static final int STATE_TODAY = 1 << 2;
+    static final int STATE_HIGHLIGHTED = 1 << 3;
+    static final int STATE_RANGE_FIRST = 1 << 4;
+    static final int STATE_RANGE_MIDDLE = 1 << 5;
+    static final int STATE_RANGE_LAST = 1 << 6;
+    private static final int STATE_RANGE =
+            STATE_RANGE_FIRST | STATE_RANGE_MIDDLE | STATE_RANGE_LAST;
+    static final int STATE_COUNT = 7;
+    private static final int[] STATE_ATTRS = {
+            R.attr.tsquare_state_selectable,
+            R.attr.tsquare_state_current_month,
+            R.attr.tsquare_state_today,
+            R.attr.tsquare_state_highlighted,
+            R.attr.tsquare_state_range_first,
+            R.attr.tsquare_state_range_middle,
             R.attr.tsquare_state_range_last
     };
+    /**
+     * The drawable states of each combination of the states above.
+     */
+    private static final int[][] DRAWABLE_STATES = new int[1 << STATE_COUNT][];
+
+    static {
+        for (int cellState = 0; cellState < DRAWABLE_STATES.length; cellState++) {
+            final int[] drawableState = new int[Integer.bitCount(cellState)];
+            int i = 0;
+            for (int bit = 0; bit < STATE_COUNT; bit++) {
+                if ((cellState & (1 << bit)) != 0) {
+                    drawableState[i++] = STATE_ATTRS[bit];
+                }
+            }
+            DRAWABLE_STATES[cellState] = drawableState;
+        }
+    }
 
-    private boolean isSelectable = false;
-    private boolean isCurrentMonth = false;
-    private boolean isToday = false;
-    private boolean isHighlighted = false;
-    private RangeState rangeState = RangeState.NONE;
+    private int cellState;
     private TextView dayOfMonthTextView;
+    // What the cell was last decorated for: see DecorationCache.
+    DecorationCache decorationCache;
+    int decoratedDay = DayCalendar.NO_DAY;
+    int decorationVersion;
+
+    /**
+     * Returns the states of {@code cell}, packed.
+     */
+    static int cellState(final MonthCellDescriptor cell) {
+        int cellState = 0;
+        if (cell.isSelectable()) {
+            cellState |= STATE_SELECTABLE;
+        }
+        if (cell.isCurrentMonth()) {
+            cellState |= STATE_CURRENT_MONTH;
+        }
+        if (cell.isToday()) {
+            cellState |= STATE_TODAY;
+        }
+        if (cell.isHighlighted()) {
+            cellState |= STATE_HIGHLIGHTED;
+        }
+        return cellState | rangeState(cell.getRangeState());
+    }
+
+    private static int rangeState(final RangeState rangeState) {
+        switch (rangeState) {
+            case FIRST:
+                return STATE_RANGE_FIRST;
+            case MIDDLE:
+                return STATE_RANGE_MIDDLE;
+            case LAST:
+                return STATE_RANGE_LAST;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the drawable states of a cell in the packed {@code cellState}.  The array is shared
+     * and must not be modified.
+     */
+    static int[] drawableState(final int cellState) {
+        return DRAWABLE_STATES[cellState];
+    }
 
     @SuppressWarnings("UnusedDeclaration") //
     public CalendarCellView(final Context context, final AttributeSet attrs) {
         super(context, attrs);
     }
 
-    public void setSelectable(final boolean isSelectable) {
-        if (this.isSelectable != isSelectable) {
-            this.isSelectable = isSelectable;
+    /**
+     * Sets all of the cell's states at once, refreshing its drawable state at most once.
+     */
+    void setCellState(final int cellState) {
+        if (this.cellState != cellState) {
+            this.cellState = cellState;
             refreshDrawableState();
         }
     }
 
+    private void setState(final int state, final boolean on) {
+        setCellState(on ? cellState | state : cellState & ~state);
+    }
+
+    public void setSelectable(final boolean isSelectable) {
+        setState(STATE_SELECTABLE, isSelectable);
+    }
+
     public void setCurrentMonth(final boolean isCurrentMonth) {
-        if (this.isCurrentMonth != isCurrentMonth) {
-            this.isCurrentMonth = isCurrentMonth;
-            refreshDrawableState();
-        }
+        setState(STATE_CURRENT_MONTH, isCurrentMonth);
     }
 
     public void setToday(final boolean isToday) {
-        if (this.isToday != isToday) {
-            this.isToday = isToday;
-            refreshDrawableState();
-        }
+        setState(STATE_TODAY, isToday);
     }
 
     public void setRangeState(final MonthCellDescriptor.RangeState rangeState) {
-        if (this.rangeState != rangeState) {
-            this.rangeState = rangeState;
-            refreshDrawableState();
-        }
+        setCellState((cellState & ~STATE_RANGE) | rangeState(rangeState));
     }
 
     public void setHighlighted(final boolean isHighlighted) {
-        if (this.isHighlighted != isHighlighted) {
-            this.isHighlighted = isHighlighted;
-            refreshDrawableState();
-        }
+        setState(STATE_HIGHLIGHTED, isHighlighted);
     }
 
     public boolean isCurrentMonth() {
-        return isCurrentMonth;
+        return (cellState & STATE_CURRENT_MONTH) != 0;
     }
 
     public boolean isToday() {
-        return isToday;
+        return (cellState & STATE_TODAY) != 0;
     }
 
     public boolean isSelectable() {
-        return isSelectable;
+        return (cellState & STATE_SELECTABLE) != 0;
     }
 
+    /**
+     * Taps on a cell are dispatched by its {@link CalendarRowView}, which clicks it, but
+     * accessibility services and keys click the cell directly: either way the row's listener gets
+     * the cell.
+     */
     @Override
-    protected int[] onCreateDrawableState(final int extraSpace) {
-        final int[] drawableState = super.onCreateDrawableState(extraSpace + 5);
-
-        if (isSelectable) {
-            mergeDrawableStates(drawableState, STATE_SELECTABLE);
-        }
-
-        if (isCurrentMonth) {
-            mergeDrawableStates(drawableState, STATE_CURRENT_MONTH);
-        }
-
-        if (isToday) {
-            mergeDrawableStates(drawableState, STATE_TODAY);
-        }
-
-        if (isHighlighted) {
-            mergeDrawableStates(drawableState, STATE_HIGHLIGHTED);
-        }
-
-        if (rangeState == MonthCellDescriptor.RangeState.FIRST) {
-            mergeDrawableStates(drawableState, STATE_RANGE_FIRST);
-        } else if (rangeState == MonthCellDescriptor.RangeState.MIDDLE) {
-            mergeDrawableStates(drawableState, STATE_RANGE_MIDDLE);
-        } else if (rangeState == RangeState.LAST) {
-            mergeDrawableStates(drawableState, STATE_RANGE_LAST);
+    public boolean performClick() {
+        final boolean handled = super.performClick();
+        if (isClickable() && isEnabled() && getParent() instanceof CalendarRowView) {
+            ((CalendarRowView) getParent()).onCellClicked(this);
+            return true;
         }
+        return handled;
+    }
 
-        return drawableState;
+    @Override
+    protected int[] onCreateDrawableState(final int extraSpace) {
+        final int[] cellDrawableState = DRAWABLE_STATES[cellState];
+        final int[] drawableState =
+                super.onCreateDrawableState(extraSpace + cellDrawableState.length);
+        return mergeDrawableStates(drawableState, cellDrawableState);
     }
 
     public void setDayOfMonthTextView(final TextView textView) {
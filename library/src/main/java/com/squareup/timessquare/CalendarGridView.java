@@ -3,12 +3,15 @@ package com.squareup.timessquare;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 /**
  * ViewGroup that draws a grid of calendar cells.  All children must be {@link CalendarRowView}s.
@@ -53,6 +56,39 @@ public class CalendarGridView extends ViewGroup {
         }
     }
 
+    /**
+     * Styles the header and all cells in a single pass.
+     */
+    void setStyle(final CalendarStyle style) {
+        dividerPaint.setColor(style.dividerColor);
+        final Resources res = getResources();
+        final CalendarRowView headerRow = (CalendarRowView) getChildAt(0);
+        headerRow.setVisibility(style.displayHeader ? VISIBLE : GONE);
+        for (int c = 0; c < 7; c++) {
+            final TextView header = (TextView) headerRow.getChildAt(c);
+            header.setText(style.weekdays[c]);
+            header.setTextColor(style.headerTextColor);
+            if (style.dateTypeface != null) {
+                header.setTypeface(style.dateTypeface);
+            }
+        }
+        for (int i = 1; i < getChildCount(); i++) {
+            final CalendarRowView row = (CalendarRowView) getChildAt(i);
+            for (int c = 0; c < 7; c++) {
+                final CalendarCellView cell = (CalendarCellView) row.getChildAt(c);
+                final Drawable background = style.newDayBackground(res);
+                if (background != null) {
+                    cell.setBackground(background);
+                }
+                final TextView dayOfMonth = cell.getDayOfMonthTextView();
+                dayOfMonth.setTextColor(style.dayTextColors);
+                if (style.dateTypeface != null) {
+                    dayOfMonth.setTypeface(style.dateTypeface);
+                }
+            }
+        }
+    }
+
     public void setDisplayHeader(final boolean displayHeader) {
         getChildAt(0).setVisibility(displayHeader ? VISIBLE : GONE);
     }
@@ -0,0 +1,149 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import java.text.DateFormat;
+import java.text.NumberFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The strings months are labelled with in a locale: day numbers, weekday headers and month titles.
+ * Each label is formatted once and shared by every month and picker that shows it, so binding a
+ * month formats nothing.  Weekday headers and month titles are only kept for the formats and
+ * months used most recently, so scrolling through years of months doesn't keep them all.
+ */
+final class CalendarLabels {
+    /**
+     * How many month titles to keep: enough for a few years, in a couple of formats.
+     */
+    private static final int MAX_MONTH_TITLES = 128;
+    /**
+     * How many weekday formats, such as those set with {@code setShortWeekdays}, to keep headers
+     * for.
+     */
+    private static final int MAX_WEEKDAY_FORMATS = 8;
+    private static final Map<Locale, CalendarLabels> LABELS = new HashMap<>();
+
+    private final Locale locale;
+    /**
+     * Day numbers, indexed by day of month.
+     */
+    private final String[] days = new String[32];
+    /**
+     * Weekday headers for each weekday format, indexed by {@link #weekdaysIndex(int, boolean)}.
+     */
+    private final Map<DateFormat, String[][]> weekdays = lruMap(MAX_WEEKDAY_FORMATS);
+    private final Map<MonthTitleKey, String> monthTitles = lruMap(MAX_MONTH_TITLES);
+
+    static synchronized CalendarLabels forLocale(final Locale locale) {
+        CalendarLabels labels = LABELS.get(locale);
+        if (labels == null) {
+            labels = new CalendarLabels(locale);
+            LABELS.put(locale, labels);
+        }
+        return labels;
+    }
+
+    private CalendarLabels(final Locale locale) {
+        this.locale = locale;
+        final NumberFormat numberFormat = NumberFormat.getInstance(locale);
+        for (int day = 1; day < days.length; day++) {
+            days[day] = numberFormat.format(day);
+        }
+    }
+
+    /**
+     * Returns the label of day {@code dayOfMonth} (1 to 31).
+     */
+    String dayOfMonth(final int dayOfMonth) {
+        return days[dayOfMonth];
+    }
+
+    /**
+     * Returns the seven weekday headers of a month whose weeks start on {@code firstDayOfWeek}, in
+     * the order they're shown.  The returned array must not be modified.
+     */
+    synchronized String[] weekdays(final DateFormat weekdayNameFormat, final int firstDayOfWeek,
+                                   final boolean isRtl) {
+        String[][] labels = weekdays.get(weekdayNameFormat);
+        if (labels == null) {
+            labels = new String[2 * 8][];
+            weekdays.put(weekdayNameFormat, labels);
+        }
+        final int index = weekdaysIndex(firstDayOfWeek, isRtl);
+        if (labels[index] == null) {
+            final Calendar weekday = Calendar.getInstance(locale);
+            final String[] headers = new String[7];
+            for (int offset = 0; offset < 7; offset++) {
+                weekday.set(Calendar.DAY_OF_WEEK,
+                        MonthView.getDayOfWeek(firstDayOfWeek, offset, isRtl));
+                headers[offset] = weekdayNameFormat.format(weekday.getTime());
+            }
+            labels[index] = headers;
+        }
+        return labels[index];
+    }
+
+    private static int weekdaysIndex(final int firstDayOfWeek, final boolean isRtl) {
+        return (isRtl ? 8 : 0) + firstDayOfWeek;
+    }
+
+    /**
+     * Returns the title of the month with key {@code monthKey}, which starts on
+     * {@code monthStart}.
+     */
+    synchronized String monthTitle(final DateFormat monthNameFormat, final int monthKey,
+                                   final Date monthStart) {
+        final MonthTitleKey key = new MonthTitleKey(monthNameFormat, monthKey);
+        String title = monthTitles.get(key);
+        if (title == null) {
+            title = monthNameFormat.format(monthStart);
+            monthTitles.put(key, title);
+        }
+        return title;
+    }
+
+    /**
+     * Returns a map that drops its least recently used entry once it holds more than
+     * {@code maxSize}.
+     */
+    private static <K, V> Map<K, V> lruMap(final int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static final class MonthTitleKey {
+        private final DateFormat format;
+        private final int monthKey;
+
+        MonthTitleKey(final DateFormat format, final int monthKey) {
+            this.format = format;
+            this.monthKey = monthKey;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MonthTitleKey)) {
+                return false;
+            }
+            final MonthTitleKey key = (MonthTitleKey) o;
+            return monthKey == key.monthKey && format.equals(key.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * format.hashCode() + monthKey;
+        }
+    }
+}
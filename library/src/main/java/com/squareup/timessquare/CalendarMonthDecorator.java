@@ -0,0 +1,20 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decorates all the cells of a month at once, so the data they show can be fetched in one go
+ * rather than a day at a time like a {@link CalendarCellDecorator} does.
+ */
+public interface CalendarMonthDecorator {
+    /**
+     * Decorates the cells of {@code month}'s grid, including the days of the neighbouring months
+     * it shows.  {@code cellViews.get(i)} shows {@code dates.get(i)}; both lists are only valid
+     * during the call.  Cells that already show the decorations of their day are left out: only
+     * the days whose decorations were invalidated are passed when the month is bound again.  As
+     * for {@link CalendarCellDecorator}s, selecting or highlighting days doesn't invalidate them.
+     */
+    void decorate(MonthDescriptor month, List<Date> dates, List<CalendarCellView> cellViews);
+}
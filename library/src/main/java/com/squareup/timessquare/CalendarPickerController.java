@@ -0,0 +1,1663 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Typeface;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Toast;
+
+import com.squareup.timessquare.CalendarPickerView.CellClickInterceptor;
+import com.squareup.timessquare.CalendarPickerView.DateSelectableFilter;
+import com.squareup.timessquare.CalendarPickerView.FluentInitializer;
+import com.squareup.timessquare.CalendarPickerView.OnDateSelectedListener;
+import com.squareup.timessquare.CalendarPickerView.OnInvalidDateSelectedListener;
+import com.squareup.timessquare.CalendarPickerView.SelectionMode;
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import static com.squareup.timessquare.DayCalendar.NO_DAY;
+
+/**
+ * Everything a calendar picker does that doesn't depend on the kind of list showing the months:
+ * the date range, selection, highlights, filters and building and binding {@link MonthView}s.
+ * {@link CalendarPickerView} and {@link CalendarRecyclerView} each own one and reach it through
+ * their public methods; the controller reaches back through a {@link Host}.
+ */
+final class CalendarPickerController {
+    /**
+     * How many months a background build hands over at a time.
+     */
+    private static final int BACKGROUND_CHUNK_SIZE = 6;
+    /**
+     * How many months on either side of the last month shown are kept in memory.
+     */
+    static final int MONTH_WINDOW = 12;
+    /**
+     * How far {@link #initOpenEnded(Date, Locale)} lets the user scroll.
+     */
+    static final int OPEN_ENDED_YEARS = 1000;
+
+    /**
+     * The list view showing the months, as seen by the controller.
+     */
+    interface Host {
+        Context getContext();
+
+        /**
+         * Returns the position of the first month the host has a bound view for.
+         */
+        int getFirstBoundPosition();
+
+        /**
+         * Returns how many consecutive months, starting at {@link #getFirstBoundPosition()}, the
+         * host has bound views for and may show again without binding them.
+         */
+        int getBoundCount();
+
+        /**
+         * Applies {@code changes}, a combination of the {@code MonthView.CHANGE_} flags, to the
+         * view of the month at {@code position} with {@link #updateMonthView}.  Returns false if
+         * that wasn't possible and all months had to be refreshed instead.
+         */
+        boolean rebindMonth(int position, int changes);
+
+        /**
+         * Binds all months again, connecting the host's adapter first if needed.
+         */
+        void refreshMonths();
+
+        void scrollToMonth(int position, boolean smoothScroll);
+
+        /**
+         * Creates a month view and hands it to the {@link MonthViewPool}, without binding it.
+         */
+        void prepareMonthView();
+
+        boolean post(Runnable action);
+    }
+
+    private final Host host;
+    /**
+     * Months and their cells, keyed by month index.  A month is only built when it is first needed
+     * (see {@link #getMonth(int)} and {@link #getMonthCells(int)}) and is dropped again once the
+     * user scrolls more than {@link #MONTH_WINDOW} months away from it, so memory use doesn't grow
+     * with the date range.
+     */
+    final SparseArray<MonthDescriptor> months = new SparseArray<>();
+    final SparseArray<List<List<MonthCellDescriptor>>> cells = new SparseArray<>();
+    final MonthView.Listener listener = new CellClickedListener();
+    int monthCount;
+    /**
+     * The days that were picked: the selected date in SINGLE mode, all of them in MULTIPLE mode,
+     * the ends of the range in RANGE mode, the picked end in RANGE_ON_TWO_SCREENS mode and the
+     * start of the range being picked in MULTI_RANGE mode.
+     */
+    final DaySet selectedDays = new DaySet();
+    /**
+     * The selected ranges in MULTI_RANGE mode.
+     */
+    private final DayRangeSet selectedRanges = new DayRangeSet();
+    DaySet highlightedDays = new DaySet();
+    /**
+     * Where the next set of highlighted days is put together before it's swapped with
+     * {@link #highlightedDays}.
+     */
+    private DaySet pendingHighlightedDays = new DaySet();
+    private Locale locale;
+    private DateFormat monthNameFormat;
+    private DateFormat weekdayNameFormat;
+    private DateFormat fullDateFormat;
+    private Calendar minCal;
+    private Calendar maxCal;
+    private DayCalendar dayCalendar;
+    private int minDay;
+    private int maxDay;
+    private int minMonthKey;
+    /**
+     * Ends of the selected range in the range modes.  The cells in between are never stored: their
+     * state is derived from these when a month is bound.
+     */
+    private int rangeStartDay = NO_DAY;
+    private int rangeEndDay = NO_DAY;
+    /**
+     * True once the only selected day of a RANGE selection was picked again, making it a one-day
+     * range: the next pick starts a new range rather than ending this one.
+     */
+    private boolean oneDayRange;
+    /**
+     * While a range is dragged (see {@link RangeDragHelper}), the day it was started from and the
+     * day it's dragged to; NO_DAY otherwise.
+     */
+    private int dragAnchorDay = NO_DAY;
+    private int dragEndDay = NO_DAY;
+    private boolean displayOnly;
+    SelectionMode selectionMode;
+    Calendar today;
+    private final int backgroundColor;
+    private final int dividerColor;
+    private final int dayBackgroundResId;
+    private final int dayTextColorResId;
+    private final int titleTextColor;
+    private final boolean displayHeader;
+    private final int headerTextColor;
+    private boolean drawMonthsOnCanvas;
+    private Typeface titleTypeface;
+    private Typeface dateTypeface;
+    private MonthViewPool monthViewPool = new MonthViewPool();
+    private CalendarStyle style;
+    private MonthViewPool.Key monthViewKey;
+
+    private OnDateSelectedListener dateListener;
+    private DateSelectableFilter dateConfiguredListener;
+    private SelectableDayCache selectableDays;
+    private OnInvalidDateSelectedListener invalidDateListener =
+            new DefaultOnInvalidDateSelectedListener();
+    private CellClickInterceptor cellClickInterceptor;
+    private List<CalendarCellDecorator> decorators;
+    private List<CalendarMonthDecorator> monthDecorators;
+    private AsyncCalendarMonthDecorator<Object> asyncDecorator;
+    private Executor asyncDecoratorExecutor;
+    private DayViewAdapter dayViewAdapter = new DefaultDayViewAdapter();
+
+    private PeakDate peakDate;
+    private boolean ignoreValidatingDates;
+    /**
+     * Bumped by every {@link #init(Date, Date, Locale)} so that months built in the background for
+     * an earlier date range are dropped, and whenever the selectable days the background build
+     * asked its filter about may have changed.
+     */
+    private volatile int buildGeneration;
+    /**
+     * What changed about the bound months that a change touched, by position: see
+     * {@link #updateDirtyMonths()}.
+     */
+    private final SparseIntArray dirtyMonths = new SparseIntArray();
+    private final DecorationCache decorationCache = new DecorationCache();
+
+    CalendarPickerController(final Context context, final AttributeSet attrs, final Host host) {
+        this.host = host;
+        final Resources res = context.getResources();
+        final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CalendarPickerView);
+        backgroundColor = a.getColor(R.styleable.CalendarPickerView_android_background,
+                res.getColor(R.color.calendar_bg));
+        dividerColor = a.getColor(R.styleable.CalendarPickerView_tsquare_dividerColor,
+                res.getColor(R.color.calendar_divider));
+        dayBackgroundResId = a.getResourceId(R.styleable.CalendarPickerView_tsquare_dayBackground,
+                R.drawable.calendar_bg_selector);
+        dayTextColorResId = a.getResourceId(R.styleable.CalendarPickerView_tsquare_dayTextColor,
+                R.color.calendar_text_selector);
+        titleTextColor = a.getColor(R.styleable.CalendarPickerView_tsquare_titleTextColor,
+                res.getColor(R.color.calendar_text_active));
+        displayHeader = a.getBoolean(R.styleable.CalendarPickerView_tsquare_displayHeader, true);
+        headerTextColor = a.getColor(R.styleable.CalendarPickerView_tsquare_headerTextColor,
+                res.getColor(R.color.calendar_text_active));
+        drawMonthsOnCanvas =
+                a.getBoolean(R.styleable.CalendarPickerView_tsquare_drawMonthsOnCanvas, false);
+        a.recycle();
+
+        locale = Locale.getDefault();
+        today = Calendar.getInstance(locale);
+        minCal = Calendar.getInstance(locale);
+        maxCal = Calendar.getInstance(locale);
+        dayCalendar = new DayCalendar(locale);
+        monthNameFormat =
+                new SimpleDateFormat(context.getString(R.string.month_name_format), locale);
+        weekdayNameFormat =
+                new SimpleDateFormat(context.getString(R.string.day_name_format), locale);
+        fullDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM, locale);
+    }
+
+    int getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    FluentInitializer init(final Date minDate, final Date maxDate, final Locale locale) {
+        if (minDate == null || maxDate == null) {
+            throw new IllegalArgumentException(
+                    "minDate and maxDate must be non-null.  " + dbg(minDate, maxDate));
+        }
+        if (minDate.after(maxDate)) {
+            throw new IllegalArgumentException(
+                    "minDate must be before maxDate.  " + dbg(minDate, maxDate));
+        }
+        if (locale == null) {
+            throw new IllegalArgumentException("Locale is null.");
+        }
+
+        // Make sure that all calendar instances use the same locale.
+        this.locale = locale;
+        today = Calendar.getInstance(locale);
+        minCal = Calendar.getInstance(locale);
+        maxCal = Calendar.getInstance(locale);
+        dayCalendar = new DayCalendar(locale);
+        final Context context = host.getContext();
+        monthNameFormat =
+                new SimpleDateFormat(context.getString(R.string.month_name_format), locale);
+        weekdayNameFormat =
+                new SimpleDateFormat(context.getString(R.string.day_name_format), locale);
+        style = null;
+        monthViewKey = null;
+        fullDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM, locale);
+
+        this.selectionMode = SelectionMode.SINGLE;
+        buildGeneration++;
+        // Clear out any previously-selected dates/cells.
+        rangeStartDay = NO_DAY;
+        rangeEndDay = NO_DAY;
+        oneDayRange = false;
+        dragAnchorDay = NO_DAY;
+        dragEndDay = NO_DAY;
+
+        peakDate = null;
+        ignoreValidatingDates = false;
+
+        // Clear previous state.
+        cells.clear();
+        months.clear();
+        decorationCache.invalidateAll();
+        minCal.setTime(minDate);
+        maxCal.setTime(maxDate);
+        CalendarPickerView.setMidnight(minCal);
+        CalendarPickerView.setMidnight(maxCal);
+        displayOnly = false;
+
+        // maxDate is exclusive: bump back to the previous day so if maxDate is the first of a
+        // month, we don't accidentally include that month in the view.
+        maxCal.add(Calendar.MINUTE, -1);
+
+        minDay = dayCalendar.toDay(minCal.getTimeInMillis());
+        maxDay = dayCalendar.toDay(maxCal.getTimeInMillis());
+        selectedDays.reset(minDay);
+        selectedRanges.clear();
+        highlightedDays.reset(minDay);
+        selectableDays = new SelectableDayCache(dayCalendar, dateConfiguredListener, minDay);
+
+        // Months are built as they're shown: all we need up front is how many there are.
+        minMonthKey = DayCalendar.monthKey(minDay);
+        monthCount = DayCalendar.monthKey(maxDay) - minMonthKey + 1;
+
+        validateAndUpdate();
+        return new FluentInitializer(this);
+    }
+
+    FluentInitializer initOpenEnded(final Date minDate, final Locale locale) {
+        if (minDate == null) {
+            throw new IllegalArgumentException("minDate must be non-null.");
+        }
+        final Calendar maxCal = Calendar.getInstance(locale);
+        maxCal.setTime(minDate);
+        maxCal.add(Calendar.YEAR, OPEN_ENDED_YEARS);
+        return init(minDate, maxCal.getTime(), locale);
+    }
+
+    void setSelectionMode(final SelectionMode mode) {
+        selectionMode = mode;
+        validateAndUpdate();
+    }
+
+    void selectInitialDates(final Collection<Date> selectedDates) {
+        if (selectionMode == SelectionMode.SINGLE && selectedDates.size() > 1) {
+            throw new IllegalArgumentException(
+                    "SINGLE mode can't be used with multiple selectedDates");
+        }
+        if (selectionMode == SelectionMode.RANGE && selectedDates.size() > 2) {
+            throw new IllegalArgumentException(
+                    "RANGE mode only allows two selectedDates.  You tried to pass "
+                            + selectedDates.size());
+        }
+        if (selectedDates != null && selectionMode == SelectionMode.MULTI_RANGE) {
+            for (final Date date : selectedDates) {
+                validateDate(date);
+                final int day = dayCalendar.toDay(date);
+                // With ignoreValidatingDates the day may be out of range: skip it, as selectDate
+                // does in the other modes.
+                if (isInRange(day) && selectableDays.isSelectable(day)) {
+                    selectedRanges.add(day, day);
+                    invalidateDays(day, day, MonthView.CHANGE_SELECTION);
+                }
+            }
+            updateDirtyMonths();
+        } else if (selectedDates != null) {
+            for (final Date date : selectedDates) {
+                selectDate(date);
+            }
+        }
+        scrollToSelectedDates();
+
+        validateAndUpdate();
+    }
+
+    @SuppressLint("SimpleDateFormat")
+    void setShortWeekdays(final String... newShortWeekdays) {
+        final DateFormatSymbols symbols = new DateFormatSymbols(locale);
+        symbols.setShortWeekdays(newShortWeekdays);
+        weekdayNameFormat = new SimpleDateFormat(
+                host.getContext().getString(R.string.day_name_format), symbols);
+        style = null;
+        monthViewKey = null;
+    }
+
+    void setDisplayOnly() {
+        displayOnly = true;
+    }
+
+    void setPeakDate(final PeakDate peakDate) {
+        this.peakDate = peakDate;
+    }
+
+    void setIgnoreValidatingDates(final boolean ignoreValidatingDates) {
+        this.ignoreValidatingDates = ignoreValidatingDates;
+    }
+
+    void buildInBackground(final Executor executor) {
+        int anchorDay = getFirstSelectedDay() != NO_DAY ? getFirstSelectedDay()
+                : dayCalendar.toDay(today.getTimeInMillis());
+        if (!isInRange(anchorDay)) {
+            anchorDay = minDay;
+        }
+        // The task gets a cache of its own: the picker's may only be used on the UI thread.
+        final SelectableDayCache taskSelectableDays =
+                new SelectableDayCache(dayCalendar, dateConfiguredListener, minDay);
+        executor.execute(new BuildMonthsTask(buildGeneration,
+                newMonthCellsBuilder(taskSelectableDays),
+                minMonthKey, monthCount, getMonthIndex(anchorDay)));
+    }
+
+    /**
+     * Builds the months within {@link #MONTH_WINDOW} of an anchor month on a worker thread, nearest
+     * first, and posts them back to the UI thread in chunks.  Stops as soon as the picker is
+     * re-initialized.
+     */
+    private class BuildMonthsTask implements Runnable {
+        private final int generation;
+        private final MonthCellsBuilder builder;
+        private final int firstMonthKey;
+        private final int monthCount;
+        private final int anchorIndex;
+
+        BuildMonthsTask(final int generation, final MonthCellsBuilder builder,
+                        final int firstMonthKey, final int monthCount, final int anchorIndex) {
+            this.generation = generation;
+            this.builder = builder;
+            this.firstMonthKey = firstMonthKey;
+            this.monthCount = monthCount;
+            this.anchorIndex = anchorIndex;
+        }
+
+        @Override
+        public void run() {
+            int distance = 0;
+            while (generation == buildGeneration) {
+                final int[] indexes = new int[BACKGROUND_CHUNK_SIZE];
+                final List<List<List<MonthCellDescriptor>>> built = new ArrayList<>();
+                while (built.size() < BACKGROUND_CHUNK_SIZE && distance <= MONTH_WINDOW * 2) {
+                    // anchor, anchor + 1, anchor - 1, anchor + 2, ...
+                    final int index = distance % 2 == 0
+                            ? anchorIndex - distance / 2 : anchorIndex + (distance + 1) / 2;
+                    distance++;
+                    if (index >= 0 && index < monthCount) {
+                        indexes[built.size()] = index;
+                        built.add(builder.build(firstMonthKey + index));
+                    }
+                }
+                if (built.isEmpty()) {
+                    return;
+                }
+                host.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        publishMonths(generation, indexes, built);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Stores months built by a {@link BuildMonthsTask}, unless the picker has been re-initialized
+     * since or a month has already been built because it was shown.
+     */
+    private void publishMonths(final int generation, final int[] indexes,
+                               final List<List<List<MonthCellDescriptor>>> built) {
+        if (generation != buildGeneration) {
+            return;
+        }
+        for (int i = 0; i < built.size(); i++) {
+            if (cells.get(indexes[i]) == null) {
+                cells.put(indexes[i], built.get(i));
+            }
+        }
+    }
+
+    void validateAndUpdate() {
+        dirtyMonths.clear();
+        host.refreshMonths();
+    }
+
+    /**
+     * Marks the bound months whose grids show any day from {@code fromDay} to {@code toDay}
+     * (inclusive) as needing to be bound again.  Other months pick up changes when they're next
+     * bound, so they are never marked.
+     */
+    private void invalidateDays(final int fromDay, final int toDay, final int changes) {
+        final int firstPosition = host.getFirstBoundPosition();
+        final int endPosition = firstPosition + host.getBoundCount();
+        for (int position = firstPosition; position < endPosition; position++) {
+            final int monthKey = minMonthKey + position;
+            final int gridStart = dayCalendar.gridStart(monthKey);
+            final int gridEnd = gridStart + dayCalendar.weeksInGrid(monthKey) * 7;
+            if (fromDay < gridEnd && toDay >= gridStart) {
+                markDirty(position, changes);
+            }
+        }
+    }
+
+    /**
+     * Marks the bound months whose grids show any of {@code days} as needing to be bound again.
+     */
+    private void invalidateDays(final DaySet days, final int changes) {
+        final int firstPosition = host.getFirstBoundPosition();
+        final int endPosition = firstPosition + host.getBoundCount();
+        for (int position = firstPosition; position < endPosition; position++) {
+            final int monthKey = minMonthKey + position;
+            final int gridStart = dayCalendar.gridStart(monthKey);
+            final int next = days.next(gridStart);
+            if (next != NO_DAY && next < gridStart + dayCalendar.weeksInGrid(monthKey) * 7) {
+                markDirty(position, changes);
+            }
+        }
+    }
+
+    private void markDirty(final int position, final int changes) {
+        dirtyMonths.put(position, dirtyMonths.get(position) | changes);
+    }
+
+    /**
+     * Applies the changes marked by {@link #invalidateDays(int, int, int)} to their months,
+     * leaving the rest of the list alone.
+     */
+    private void updateDirtyMonths() {
+        final int firstPosition = host.getFirstBoundPosition();
+        final int endPosition = firstPosition + host.getBoundCount();
+        for (int i = 0; i < dirtyMonths.size(); i++) {
+            final int position = dirtyMonths.keyAt(i);
+            if (position >= firstPosition && position < endPosition
+                    && !host.rebindMonth(position, dirtyMonths.valueAt(i))) {
+                break;
+            }
+        }
+        dirtyMonths.clear();
+    }
+
+    void scrollToSelectedDates() {
+        int selectedIndex = -1;
+        if (getFirstSelectedDay() != NO_DAY) {
+            selectedIndex = getMonthIndex(getFirstSelectedDay());
+        }
+        if (selectedIndex < 0) {
+            selectedIndex = getMonthIndex(dayCalendar.toDay(System.currentTimeMillis()));
+        }
+        if (selectedIndex >= 0) {
+            host.scrollToMonth(selectedIndex, false);
+        }
+    }
+
+    boolean scrollToDate(final Date date) {
+        final int selectedIndex = getMonthIndex(dayCalendar.toDay(date));
+        if (selectedIndex >= 0) {
+            host.scrollToMonth(selectedIndex, false);
+            return true;
+        }
+        return false;
+    }
+
+    void setTitleTypeface(final Typeface titleTypeface) {
+        this.titleTypeface = titleTypeface;
+        style = null;
+        monthViewKey = null;
+        validateAndUpdate();
+    }
+
+    void setDateTypeface(final Typeface dateTypeface) {
+        this.dateTypeface = dateTypeface;
+        style = null;
+        monthViewKey = null;
+        validateAndUpdate();
+    }
+
+    /**
+     * Returns the earliest selected date, not the one selected first, or null.
+     */
+    Date getSelectedDate() {
+        final int firstDay = getFirstSelectedDay();
+        return (firstDay != NO_DAY ? dayCalendar.toDate(firstDay) : null);
+    }
+
+    /**
+     * Returns the earliest selected day, or {@link DayCalendar#NO_DAY} if nothing is selected.
+     */
+    private int getFirstSelectedDay() {
+        final int firstDay = selectedDays.first();
+        if (!selectedRanges.isEmpty()
+                && (firstDay == NO_DAY || selectedRanges.start(0) < firstDay)) {
+            return selectedRanges.start(0);
+        }
+        return firstDay;
+    }
+
+    List<Date> getSelectedDates() {
+        final List<Date> selectedDates = new ArrayList<>();
+        if (rangeEndDay != NO_DAY && rangeStartDay <= rangeEndDay) {
+            for (int day = rangeStartDay; day <= rangeEndDay; day++) {
+                if (isInRange(day) && selectableDays.isSelectable(day)) {
+                    selectedDates.add(dayCalendar.toDate(day));
+                }
+            }
+            return selectedDates;
+        }
+        if (!selectedRanges.isEmpty()) {
+            // The start of the range being picked goes between the ranges: it's never in one.
+            int pickedDay = selectedDays.first();
+            final List<List<Date>> ranges = getSelectedRanges();
+            for (int i = 0; i < ranges.size(); i++) {
+                if (pickedDay != NO_DAY && pickedDay < selectedRanges.start(i)) {
+                    selectedDates.add(dayCalendar.toDate(pickedDay));
+                    pickedDay = NO_DAY;
+                }
+                selectedDates.addAll(ranges.get(i));
+            }
+            if (pickedDay != NO_DAY) {
+                selectedDates.add(dayCalendar.toDate(pickedDay));
+            }
+            return selectedDates;
+        }
+        for (int day = selectedDays.first(); day != NO_DAY; day = selectedDays.next(day + 1)) {
+            selectedDates.add(dayCalendar.toDate(day));
+        }
+        return selectedDates;
+    }
+
+    /**
+     * Returns the dates of each range selected in MULTI_RANGE mode, in order.
+     */
+    List<List<Date>> getSelectedRanges() {
+        final List<List<Date>> ranges = new ArrayList<>(selectedRanges.size());
+        for (int i = 0; i < selectedRanges.size(); i++) {
+            final List<Date> range = new ArrayList<>();
+            for (int day = selectedRanges.start(i); day <= selectedRanges.end(i); day++) {
+                if (isInRange(day) && selectableDays.isSelectable(day)) {
+                    range.add(dayCalendar.toDate(day));
+                }
+            }
+            ranges.add(range);
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns a string summarizing what the client sent us for init() params.
+     */
+    private static String dbg(final Date minDate, final Date maxDate) {
+        return "minDate: " + minDate + "\nmaxDate: " + maxDate;
+    }
+
+    private class CellClickedListener implements MonthView.Listener {
+        @Override
+        public void handleClick(final MonthCellDescriptor cell) {
+            final Date clickedDate = cell.getDate();
+
+            if (cellClickInterceptor != null && cellClickInterceptor.onCellClicked(clickedDate)) {
+                return;
+            }
+            final int clickedDay = dayCalendar.toDay(clickedDate);
+            if (!isInRange(clickedDay) || !selectableDays.isSelectable(clickedDay)) {
+                if (invalidDateListener != null) {
+                    invalidDateListener.onInvalidDateSelected(clickedDate);
+                }
+            } else {
+                final boolean wasSelected = doSelectDate(clickedDate);
+
+                if (dateListener != null) {
+                    if (wasSelected) {
+                        dateListener.onDateSelected(clickedDate);
+                    } else {
+                        dateListener.onDateUnselected(clickedDate);
+                    }
+                }
+            }
+        }
+    }
+
+    boolean selectDate(final Date date) {
+        return selectDate(date, false);
+    }
+
+    boolean selectDate(final Date date, final boolean smoothScroll) {
+        validateDate(date);
+
+        final MonthCellWithMonthIndex monthCellWithMonthIndex = getMonthCellWithIndexByDate(date);
+        if (monthCellWithMonthIndex == null
+                || !selectableDays.isSelectable(dayCalendar.toDay(date))) {
+            return false;
+        }
+        final boolean wasSelected = doSelectDate(date);
+        if (wasSelected) {
+            host.scrollToMonth(monthCellWithMonthIndex.monthIndex, smoothScroll);
+        }
+        return wasSelected;
+    }
+
+    private void validateDate(final Date date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Selected date must be non-null.");
+        }
+        if (ignoreValidatingDates) {
+            return;
+        }
+        if (!isInRange(dayCalendar.toDay(date))) {
+            throw new IllegalArgumentException(String.format(
+                    "SelectedDate must be between minDate and maxDate."
+                            + "%nminDate: %s%nmaxDate: %s%nselectedDate: %s",
+                    minCal.getTime(), maxCal.getTime(), date));
+        }
+    }
+
+    private boolean doSelectDate(final Date date) {
+        final int day = dayCalendar.toDay(date);
+        boolean wasSelected = true;
+        boolean closesOneDayRange = false;
+
+        switch (selectionMode) {
+            case RANGE_ON_TWO_SCREENS:
+                clearOldSelections();
+                break;
+            case RANGE:
+                if (selectedDays.size() > 1 || oneDayRange) {
+                    // We've already got a range selected: clear the old one.
+                    clearOldSelections();
+                } else if (selectedDays.size() == 1 && day < selectedDays.first()) {
+                    // We're moving the start of the range back in time: clear the old start date.
+                    clearOldSelections();
+                } else if (selectedDays.size() == 1 && day == selectedDays.first()) {
+                    // Picking the start again ends the range on it.
+                    closesOneDayRange = true;
+                }
+                break;
+
+            case MULTIPLE:
+                // Selecting an already-selected date un-selects it.
+                wasSelected = !selectedDays.remove(day);
+                break;
+
+            case SINGLE:
+                clearOldSelections();
+                break;
+
+            case MULTI_RANGE:
+                wasSelected = selectInMultiRange(day);
+                updateDirtyMonths();
+                return wasSelected;
+
+            default:
+                throw new IllegalStateException("Unknown selectionMode " + selectionMode);
+        }
+
+        if (wasSelected) {
+            selectedDays.add(day);
+        }
+        invalidateDays(day, day, MonthView.CHANGE_SELECTION);
+        updateSelectedRange();
+        oneDayRange = closesOneDayRange;
+
+        // Rebind the months that changed.
+        updateDirtyMonths();
+
+        //TODO do not enter this statement if peakDate equals selected Date
+        if (selectionMode == SelectionMode.RANGE_ON_TWO_SCREENS && peakDate != null
+                && rangeEndDay == NO_DAY) {
+            // The peak date couldn't be used as the other end of the range.
+            return false;
+        }
+        return wasSelected;
+    }
+
+    /**
+     * Picks {@code day} in MULTI_RANGE mode: the first pick starts a range and the next one ends
+     * it.  Picking a day of a range while none is being started removes that range.  Only the
+     * months showing the days of the added or removed range are marked.  Returns false if the day
+     * was unselected.
+     */
+    private boolean selectInMultiRange(final int day) {
+        if (selectedDays.isEmpty()) {
+            final int index = selectedRanges.indexOf(day);
+            if (index >= 0) {
+                final int start = selectedRanges.start(index);
+                final int end = selectedRanges.end(index);
+                selectedRanges.remove(start, end);
+                invalidateDays(start, end, MonthView.CHANGE_SELECTION);
+                return false;
+            }
+            selectedDays.add(day);
+            invalidateDays(day, day, MonthView.CHANGE_SELECTION);
+            return true;
+        }
+        final int startDay = selectedDays.first();
+        selectedDays.clear();
+        // The range takes in the ranges it overlaps or touches: their ends are in its middle now.
+        final int index = selectedRanges.add(Math.min(startDay, day), Math.max(startDay, day));
+        invalidateDays(selectedRanges.start(index), selectedRanges.end(index),
+                MonthView.CHANGE_SELECTION);
+        return true;
+    }
+
+    private void clearOldSelections() {
+        if (dateListener != null) {
+            if (rangeEndDay != NO_DAY) {
+                // Only the ends of a range are reported as unselected, not the days in between.
+                dateListener.onDateUnselected(dayCalendar.toDate(rangeStartDay));
+                dateListener.onDateUnselected(dayCalendar.toDate(rangeEndDay));
+            } else {
+                for (int day = selectedDays.first(); day != NO_DAY;
+                     day = selectedDays.next(day + 1)) {
+                    dateListener.onDateUnselected(dayCalendar.toDate(day));
+                }
+            }
+        }
+        invalidateDays(selectedDays, MonthView.CHANGE_SELECTION);
+        selectedDays.clear();
+        updateSelectedRange();
+    }
+
+    /**
+     * Recomputes {@link #rangeStartDay} and {@link #rangeEndDay} from the selected days and, in
+     * RANGE_ON_TWO_SCREENS mode, the peak date.
+     */
+    private void updateSelectedRange() {
+        invalidateRange();
+        rangeStartDay = NO_DAY;
+        rangeEndDay = NO_DAY;
+        oneDayRange = false;
+        if (!isRangeMode() || selectedDays.isEmpty()) {
+            return;
+        }
+        rangeStartDay = selectedDays.first();
+        if (selectionMode == SelectionMode.RANGE) {
+            if (selectedDays.size() > 1) {
+                rangeEndDay = selectedDays.last();
+            }
+        } else if (peakDate != null
+                && getMonthCellWithIndexByDate(peakDate.getPeakDate()) != null) {
+            final int peakDay = dayCalendar.toDay(peakDate.getPeakDate());
+            if (peakDate instanceof LowerPeakDate) {
+                rangeEndDay = rangeStartDay;
+                rangeStartDay = peakDay;
+            } else if (peakDate instanceof HigherPeakDate) {
+                rangeEndDay = peakDay;
+            }
+        }
+        invalidateRange();
+    }
+
+    boolean canDragRange() {
+        return selectionMode == SelectionMode.RANGE && !displayOnly;
+    }
+
+    /**
+     * Starts dragging a range from {@code cell}, which becomes its only selected day.  Returns
+     * false if the day can't be selected.
+     */
+    boolean startRangeDrag(final MonthCellDescriptor cell) {
+        final int day = dayCalendar.toDay(cell.getDate());
+        if (!canDragRange() || !isInRange(day) || !selectableDays.isSelectable(day)) {
+            return false;
+        }
+        clearOldSelections();
+        selectedDays.add(day);
+        invalidateDays(day, day, MonthView.CHANGE_SELECTION);
+        updateSelectedRange();
+        updateDirtyMonths();
+        dragAnchorDay = day;
+        dragEndDay = day;
+        if (dateListener != null) {
+            dateListener.onDateSelected(cell.getDate());
+        }
+        return true;
+    }
+
+    /**
+     * Moves the dragged end of the range to {@code cell}.  Only the months showing the days that
+     * enter or leave the range, and the day it was started from, are updated.
+     */
+    void dragRangeTo(final MonthCellDescriptor cell) {
+        final int day = dayCalendar.toDay(cell.getDate());
+        if (dragAnchorDay == NO_DAY || day == dragEndDay
+                || !isInRange(day) || !selectableDays.isSelectable(day)) {
+            return;
+        }
+        if (dragEndDay != dragAnchorDay) {
+            selectedDays.remove(dragEndDay);
+        }
+        selectedDays.add(day);
+        // The days between the old and the new end enter or leave the range, and the day it was
+        // started from may become its other end.
+        invalidateDays(Math.min(dragEndDay, day), Math.max(dragEndDay, day),
+                MonthView.CHANGE_SELECTION);
+        invalidateDays(dragAnchorDay, dragAnchorDay, MonthView.CHANGE_SELECTION);
+        dragEndDay = day;
+        rangeStartDay = Math.min(dragAnchorDay, day);
+        rangeEndDay = day == dragAnchorDay ? NO_DAY : Math.max(dragAnchorDay, day);
+        updateDirtyMonths();
+    }
+
+    /**
+     * Ends the drag, reporting the day the range was dragged to as selected.
+     */
+    void endRangeDrag() {
+        if (dragAnchorDay == NO_DAY) {
+            return;
+        }
+        if (dateListener != null && dragEndDay != dragAnchorDay) {
+            dateListener.onDateSelected(dayCalendar.toDate(dragEndDay));
+        }
+        dragAnchorDay = NO_DAY;
+        dragEndDay = NO_DAY;
+    }
+
+    private void invalidateRange() {
+        if (rangeStartDay != NO_DAY) {
+            invalidateDays(rangeStartDay, rangeEndDay != NO_DAY ? rangeEndDay : rangeStartDay,
+                    MonthView.CHANGE_SELECTION);
+        }
+    }
+
+    private boolean isRangeMode() {
+        return selectionMode == SelectionMode.RANGE
+                || selectionMode == SelectionMode.RANGE_ON_TWO_SCREENS;
+    }
+
+    /**
+     * Derives the selected, range and highlighted state of a month's cells from
+     * {@link #selectedDays}, the selected range and {@link #highlightedDays}.  This runs whenever
+     * a month is built or bound, so the cost of a selection doesn't depend on how many days it
+     * covers.
+     */
+    private void applyDayState(final int monthKey,
+                               final List<List<MonthCellDescriptor>> monthCells) {
+        int highlightDay = dayCalendar.gridStart(monthKey);
+        for (final List<MonthCellDescriptor> week : monthCells) {
+            for (final MonthCellDescriptor cell : week) {
+                cell.setHighlighted(highlightedDays.contains(highlightDay++));
+            }
+        }
+
+        if (selectionMode == SelectionMode.MULTI_RANGE) {
+            applyMultiRangeState(monthKey, monthCells);
+            return;
+        }
+        if (!isRangeMode()) {
+            int day = dayCalendar.gridStart(monthKey);
+            for (final List<MonthCellDescriptor> week : monthCells) {
+                for (final MonthCellDescriptor cell : week) {
+                    cell.setSelected(cell.isCurrentMonth() && selectedDays.contains(day));
+                    cell.setRangeState(RangeState.NONE);
+                    day++;
+                }
+            }
+            return;
+        }
+
+        int day = dayCalendar.gridStart(monthKey);
+        for (final List<MonthCellDescriptor> week : monthCells) {
+            for (final MonthCellDescriptor cell : week) {
+                RangeState rangeState = RangeState.NONE;
+                boolean isSelected = day == rangeStartDay || day == rangeEndDay;
+                if (rangeEndDay != NO_DAY) {
+                    if (day == rangeStartDay) {
+                        rangeState = RangeState.FIRST;
+                    } else if (day == rangeEndDay) {
+                        rangeState = RangeState.LAST;
+                    } else if (day > rangeStartDay && day < rangeEndDay) {
+                        rangeState = RangeState.MIDDLE;
+                        isSelected = true;
+                    }
+                }
+                if (!cell.isSelectable()) {
+                    isSelected = false;
+                    rangeState = RangeState.NONE;
+                }
+                cell.setSelected(isSelected);
+                cell.setRangeState(rangeState);
+                day++;
+            }
+        }
+    }
+
+    /**
+     * Derives the selected and range state of a month's cells in MULTI_RANGE mode: the first range
+     * the month shows is found by a binary search, then the ranges are walked along with the days.
+     */
+    private void applyMultiRangeState(final int monthKey,
+                                      final List<List<MonthCellDescriptor>> monthCells) {
+        int day = dayCalendar.gridStart(monthKey);
+        int range = selectedRanges.ceiling(day);
+        for (final List<MonthCellDescriptor> week : monthCells) {
+            for (final MonthCellDescriptor cell : week) {
+                if (range < selectedRanges.size() && selectedRanges.end(range) < day) {
+                    range++;
+                }
+                RangeState rangeState = RangeState.NONE;
+                boolean isSelected = selectedDays.contains(day);
+                if (range < selectedRanges.size() && selectedRanges.start(range) <= day) {
+                    final int start = selectedRanges.start(range);
+                    final int end = selectedRanges.end(range);
+                    isSelected = true;
+                    if (start < end) {
+                        rangeState = day == start ? RangeState.FIRST
+                                : day == end ? RangeState.LAST : RangeState.MIDDLE;
+                    }
+                }
+                if (!cell.isSelectable()) {
+                    isSelected = false;
+                    rangeState = RangeState.NONE;
+                }
+                cell.setSelected(isSelected);
+                cell.setRangeState(rangeState);
+                day++;
+            }
+        }
+    }
+
+    /**
+     * Highlights {@code dates}, in addition to the dates already highlighted.
+     */
+    void highlightDates(final Collection<Date> dates) {
+        pendingHighlightedDays.copyFrom(highlightedDays);
+        addHighlights(dates);
+        swapHighlights();
+    }
+
+    /**
+     * Highlights exactly {@code dates}, un-highlighting all other dates.
+     */
+    void setHighlightedDates(final Collection<Date> dates) {
+        pendingHighlightedDays.reset(minDay);
+        addHighlights(dates);
+        swapHighlights();
+    }
+
+    void clearHighlightedDates() {
+        pendingHighlightedDays.reset(minDay);
+        swapHighlights();
+    }
+
+    private void addHighlights(final Collection<Date> dates) {
+        for (final Date date : dates) {
+            validateDate(date);
+            final int day = dayCalendar.toDay(date);
+            if (selectableDays.isSelectable(day)) {
+                pendingHighlightedDays.add(day);
+            }
+        }
+    }
+
+    /**
+     * Makes {@link #pendingHighlightedDays} the highlighted days and rebinds the bound months whose
+     * highlights changed.  Cells pick up their highlight state whenever they're bound, so the other
+     * months need no work.
+     */
+    private void swapHighlights() {
+        final DaySet oldHighlightedDays = highlightedDays;
+        highlightedDays = pendingHighlightedDays;
+        pendingHighlightedDays = oldHighlightedDays;
+
+        final int firstPosition = host.getFirstBoundPosition();
+        final int endPosition = firstPosition + host.getBoundCount();
+        for (int position = firstPosition; position < endPosition; position++) {
+            final int monthKey = minMonthKey + position;
+            final int gridStart = dayCalendar.gridStart(monthKey);
+            final int gridEnd = gridStart + dayCalendar.weeksInGrid(monthKey) * 7;
+            if (!highlightedDays.sameDays(oldHighlightedDays, gridStart, gridEnd)) {
+                markDirty(position, MonthView.CHANGE_HIGHLIGHT);
+            }
+        }
+        updateDirtyMonths();
+    }
+
+    /**
+     * Hold a cell with a month-index.
+     */
+    private static class MonthCellWithMonthIndex {
+        public MonthCellDescriptor cell;
+        public int monthIndex;
+
+        public MonthCellWithMonthIndex(final MonthCellDescriptor cell, final int monthIndex) {
+            this.cell = cell;
+            this.monthIndex = monthIndex;
+        }
+    }
+
+    /**
+     * Return cell and month-index (for scrolling) for a given Date.  The cell's week and column are
+     * computed from its distance to the start of the month's grid, so only the month containing the
+     * date is built and no cells are scanned.  A date can only be selectable in its own month.
+     */
+    private MonthCellWithMonthIndex getMonthCellWithIndexByDate(final Date date) {
+        final int day = dayCalendar.toDay(date);
+        final int index = getMonthIndex(day);
+        if (index < 0) {
+            return null;
+        }
+
+        final int offset = day - dayCalendar.gridStart(minMonthKey + index);
+        final MonthCellDescriptor cell = getMonthCells(index).get(offset / 7).get(offset % 7);
+        return cell.isSelectable() ? new MonthCellWithMonthIndex(cell, index) : null;
+    }
+
+    /**
+     * Returns the index of the month containing {@code day}, or -1 if that month isn't displayed.
+     */
+    private int getMonthIndex(final int day) {
+        final int index = DayCalendar.monthKey(day) - minMonthKey;
+        return index >= 0 && index < monthCount ? index : -1;
+    }
+
+    int getMonthCount() {
+        return monthCount;
+    }
+
+    /**
+     * Returns the month key ({@code year * 12 + month}) of the month at {@code monthIndex}.  It
+     * doesn't change when the list scrolls, which makes it a stable id.
+     */
+    int getMonthKey(final int monthIndex) {
+        return minMonthKey + monthIndex;
+    }
+
+    /**
+     * Returns the month at {@code monthIndex}, building it if it isn't in memory.
+     */
+    MonthDescriptor getMonth(final int monthIndex) {
+        MonthDescriptor month = months.get(monthIndex);
+        if (month == null) {
+            final int monthKey = minMonthKey + monthIndex;
+            final Date date = dayCalendar.toDate(DayCalendar.monthStart(monthKey));
+            final String title =
+                    CalendarLabels.forLocale(locale).monthTitle(monthNameFormat, monthKey, date);
+            month = new MonthDescriptor(DayCalendar.month(monthKey), DayCalendar.year(monthKey),
+                    date, title);
+            Logr.d("Adding month %s", month);
+            months.put(monthIndex, month);
+        }
+        return month;
+    }
+
+    /**
+     * Returns the cells of the month at {@code monthIndex}, building them if they aren't in memory.
+     */
+    List<List<MonthCellDescriptor>> getMonthCells(final int monthIndex) {
+        List<List<MonthCellDescriptor>> monthCells = cells.get(monthIndex);
+        if (monthCells == null) {
+            monthCells = getMonthCells(getMonth(monthIndex));
+            cells.put(monthIndex, monthCells);
+        }
+        return monthCells;
+    }
+
+    /**
+     * Drops the months that are more than {@link #MONTH_WINDOW} months away from
+     * {@code monthIndex}.
+     */
+    private void evictFarMonths(final int monthIndex) {
+        evictFarMonths(months, monthIndex);
+        evictFarMonths(cells, monthIndex);
+    }
+
+    private static void evictFarMonths(final SparseArray<?> byMonth, final int monthIndex) {
+        if (byMonth.size() <= MONTH_WINDOW * 2 + 1) {
+            return;
+        }
+        for (int i = byMonth.size() - 1; i >= 0; i--) {
+            if (Math.abs(byMonth.keyAt(i) - monthIndex) > MONTH_WINDOW) {
+                byMonth.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Whether months are drawn by a {@link MonthCanvasView}: only when asked to and when there is
+     * no custom {@link DayViewAdapter} or decorator it couldn't honor.
+     */
+    private boolean usesCanvas() {
+        return drawMonthsOnCanvas && dayViewAdapter.getClass() == DefaultDayViewAdapter.class
+                && (decorators == null || decorators.isEmpty())
+                && (monthDecorators == null || monthDecorators.isEmpty())
+                && asyncDecorator == null;
+    }
+
+    /**
+     * Returns the key that tells apart month views that can't be bound in each other's place.
+     */
+    private MonthViewPool.Key getMonthViewKey() {
+        if (monthViewKey == null) {
+            monthViewKey = new MonthViewPool.Key(
+                    usesCanvas() ? MonthCanvasView.class : dayViewAdapter.getClass(), getStyle());
+        }
+        return monthViewKey;
+    }
+
+    /**
+     * Returns the style of month views, resolving it if the attributes, locale or typefaces it's
+     * made of changed.
+     */
+    private CalendarStyle getStyle() {
+        if (style == null) {
+            style = new CalendarStyle(host.getContext(), dividerColor, dayBackgroundResId,
+                    dayTextColorResId, titleTextColor, displayHeader, headerTextColor,
+                    titleTypeface, dateTypeface, locale, weekdayNameFormat,
+                    today.getFirstDayOfWeek());
+        }
+        return style;
+    }
+
+    /**
+     * Returns true if {@code monthView} was created for the current {@link DayViewAdapter},
+     * renderer and style and can be bound again.
+     */
+    boolean canRebind(final View monthView) {
+        return monthView.getTag(R.id.month_view_key).equals(getMonthViewKey());
+    }
+
+    /**
+     * Returns a number that's the same for all month views {@link #canRebind(View) compatible}
+     * with each other, across the pickers sharing this one's {@link MonthViewPool}.
+     */
+    int getMonthViewType() {
+        return monthViewPool.getViewType(getMonthViewKey());
+    }
+
+    View createMonthView(final ViewGroup parent) {
+        final View monthView = monthViewPool.acquire(getMonthViewKey(), this);
+        return monthView != null ? monthView : inflateMonthView(parent);
+    }
+
+    /**
+     * Creates a new month view, bypassing the {@link MonthViewPool}.
+     */
+    View inflateMonthView(final ViewGroup parent) {
+        final View monthView;
+        if (usesCanvas()) {
+            monthView = MonthCanvasView.create(parent.getContext(), getStyle(), listener);
+        } else {
+            monthView = MonthView.create(parent, LayoutInflater.from(parent.getContext()),
+                    getStyle(), listener, decorators, dayViewAdapter);
+        }
+        monthView.setTag(R.id.month_view_key, getMonthViewKey());
+        return monthView;
+    }
+
+    /**
+     * Creates {@code count} month views for the {@link MonthViewPool}, one each time the main
+     * thread runs out of messages to handle.
+     */
+    void prepareMonthViews(final int count) {
+        if (count <= 0) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            private int remaining = count;
+
+            @Override
+            public boolean queueIdle() {
+                host.prepareMonthView();
+                return --remaining > 0;
+            }
+        });
+    }
+
+    /**
+     * Hands a month view this picker's list recycled, and that has been removed from its parent,
+     * to the {@link MonthViewPool}.  The list may still hand it back as a convert view: see
+     * {@link #reclaimMonthView(View)}.
+     */
+    void releaseMonthView(final View monthView) {
+        cancelDecorationLoads(monthView);
+        monthViewPool.release(monthView, this);
+    }
+
+    /**
+     * Takes back a month view this picker released, returning false if another picker sharing the
+     * {@link MonthViewPool} has taken it meanwhile.
+     */
+    boolean reclaimMonthView(final View monthView) {
+        return monthViewPool.reclaim(monthView, this);
+    }
+
+    /**
+     * Hands a month view created ahead of time to the {@link MonthViewPool}, for any picker.
+     */
+    void addPreparedMonthView(final View monthView) {
+        monthViewPool.release(monthView, null);
+    }
+
+    void setMonthViewPool(final MonthViewPool monthViewPool) {
+        this.monthViewPool = monthViewPool;
+        host.refreshMonths();
+    }
+
+    MonthViewPool getMonthViewPool() {
+        return monthViewPool;
+    }
+
+    void bindMonthView(final View view, final int position) {
+        evictFarMonths(position);
+        final List<List<MonthCellDescriptor>> monthCells = getMonthCells(position);
+        applyDayState(minMonthKey + position, monthCells);
+        // Views can be shared between pickers: make sure this one gets the clicks.
+        if (view instanceof MonthCanvasView) {
+            final MonthCanvasView canvasView = (MonthCanvasView) view;
+            canvasView.setListener(listener);
+            // The typefaces are part of the view's style, already applied.
+            canvasView.init(getMonth(position), monthCells, displayOnly, null, null);
+        } else {
+            final MonthView monthView = (MonthView) view;
+            monthView.setListener(listener);
+            setDecorations(monthView, position);
+            monthView.init(getMonth(position), monthCells, displayOnly, null, null);
+            loadDecorations(monthView, getMonth(position));
+        }
+    }
+
+    /**
+     * Applies {@code changes}, a combination of the {@code MonthView.CHANGE_} flags, to
+     * {@code view}, which is bound to the month at {@code position}.
+     */
+    void updateMonthView(final View view, final int position, final int changes) {
+        if (changes == MonthView.CHANGE_ALL) {
+            bindMonthView(view, position);
+            return;
+        }
+        final List<List<MonthCellDescriptor>> monthCells = getMonthCells(position);
+        applyDayState(minMonthKey + position, monthCells);
+        if (view instanceof MonthCanvasView) {
+            ((MonthCanvasView) view).update(monthCells);
+        } else if ((changes & MonthView.CHANGE_DECORATIONS) != 0) {
+            final MonthView monthView = (MonthView) view;
+            setDecorations(monthView, position);
+            monthView.update(monthCells, changes);
+            loadDecorations(monthView, getMonth(position));
+        } else {
+            ((MonthView) view).update(monthCells, changes);
+        }
+    }
+
+    private void setDecorations(final MonthView monthView, final int position) {
+        monthView.setDecorators(decorators);
+        monthView.setMonthDecorators(monthDecorators);
+        monthView.setDecorationCache(decorationCache,
+                dayCalendar.gridStart(minMonthKey + position));
+    }
+
+    /**
+     * Decorates the cells {@code monthView} just decorated with the
+     * {@link AsyncCalendarMonthDecorator}'s placeholders and starts loading their data.  Loads
+     * started for what the view showed before go on for the cells that still show it.
+     */
+    private void loadDecorations(final MonthView monthView, final MonthDescriptor month) {
+        final List<DecorationLoad> loads = pruneDecorationLoads(monthView);
+        if (asyncDecorator == null) {
+            return;
+        }
+        final List<Date> dates = new ArrayList<>(6 * 7);
+        final List<CalendarCellView> cellViews = new ArrayList<>(6 * 7);
+        monthView.getDecoratedCells(dates, cellViews);
+        if (dates.isEmpty()) {
+            return;
+        }
+        asyncDecorator.decoratePlaceholders(month, dates, cellViews);
+        final DecorationLoad load =
+                new DecorationLoad(asyncDecorator, monthView, month, dates, cellViews);
+        if (loads == null) {
+            final List<DecorationLoad> newLoads = new ArrayList<>(2);
+            newLoads.add(load);
+            monthView.setTag(R.id.month_decoration_load, newLoads);
+        } else {
+            loads.add(load);
+        }
+        asyncDecoratorExecutor.execute(load);
+    }
+
+    /**
+     * Cancels the loads of {@code monthView} none of whose cells still wait for them, and returns
+     * the others, or null if there are none.
+     */
+    @SuppressWarnings("unchecked")
+    private List<DecorationLoad> pruneDecorationLoads(final View monthView) {
+        final List<DecorationLoad> loads =
+                (List<DecorationLoad>) monthView.getTag(R.id.month_decoration_load);
+        if (loads == null) {
+            return null;
+        }
+        for (final Iterator<DecorationLoad> it = loads.iterator(); it.hasNext();) {
+            final DecorationLoad load = it.next();
+            if (!load.isPending()) {
+                load.cancelled = true;
+                it.remove();
+            }
+        }
+        if (loads.isEmpty()) {
+            monthView.setTag(R.id.month_decoration_load, null);
+            return null;
+        }
+        return loads;
+    }
+
+    /**
+     * Cancels the decoration loads of {@code monthView}, which was recycled.  The cells they were
+     * loading for only show placeholders, so they're decorated again when next bound.
+     */
+    @SuppressWarnings("unchecked")
+    void cancelDecorationLoads(final View monthView) {
+        final List<DecorationLoad> loads =
+                (List<DecorationLoad>) monthView.getTag(R.id.month_decoration_load);
+        if (loads == null) {
+            return;
+        }
+        monthView.setTag(R.id.month_decoration_load, null);
+        for (final DecorationLoad load : loads) {
+            load.cancelled = true;
+            for (int i = 0; i < load.cellViews.size(); i++) {
+                if (load.isPending(i)) {
+                    DecorationCache.forget(load.cellViews.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the data of a month view's {@link AsyncCalendarMonthDecorator} on its executor and
+     * posts it back to the UI thread.  There it's applied to the cells that still show the
+     * placeholders of the load: those neither bound to another day nor decorated again since.
+     */
+    private class DecorationLoad implements Runnable {
+        private final AsyncCalendarMonthDecorator<Object> decorator;
+        private final MonthView monthView;
+        private final MonthDescriptor month;
+        private final List<Date> dates;
+        private final List<CalendarCellView> cellViews;
+        private final DecorationCache cache;
+        // The day and decoration version each cell was stamped with when the load started.
+        private final int[] days;
+        private final int[] versions;
+        volatile boolean cancelled;
+
+        DecorationLoad(final AsyncCalendarMonthDecorator<Object> decorator,
+                       final MonthView monthView, final MonthDescriptor month,
+                       final List<Date> dates, final List<CalendarCellView> cellViews) {
+            this.decorator = decorator;
+            this.monthView = monthView;
+            this.month = month;
+            this.dates = dates;
+            this.cellViews = cellViews;
+            cache = decorationCache;
+            days = new int[cellViews.size()];
+            versions = new int[cellViews.size()];
+            for (int i = 0; i < days.length; i++) {
+                days[i] = cellViews.get(i).decoratedDay;
+                versions[i] = cellViews.get(i).decorationVersion;
+            }
+        }
+
+        /**
+         * Returns true if the cell at {@code index} still shows this load's placeholders.
+         */
+        boolean isPending(final int index) {
+            return cache.isStamped(cellViews.get(index), days[index], versions[index]);
+        }
+
+        boolean isPending() {
+            for (int i = 0; i < days.length; i++) {
+                if (isPending(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            final Object data = decorator.load(month, dates);
+            host.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cancelled) {
+                        apply(data);
+                    }
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private void apply(final Object data) {
+            final List<DecorationLoad> loads =
+                    (List<DecorationLoad>) monthView.getTag(R.id.month_decoration_load);
+            loads.remove(this);
+            if (loads.isEmpty()) {
+                monthView.setTag(R.id.month_decoration_load, null);
+            }
+            final List<Date> pendingDates = new ArrayList<>(dates.size());
+            final List<CalendarCellView> pendingCells = new ArrayList<>(cellViews.size());
+            for (int i = 0; i < days.length; i++) {
+                if (isPending(i)) {
+                    pendingDates.add(dates.get(i));
+                    pendingCells.add(cellViews.get(i));
+                }
+            }
+            if (!pendingDates.isEmpty()) {
+                decorator.decorate(month, pendingDates, pendingCells, data);
+            }
+        }
+    }
+
+    List<List<MonthCellDescriptor>> getMonthCells(final MonthDescriptor month) {
+        final int monthKey = DayCalendar.monthKey(month.getYear(), month.getMonth());
+        final List<List<MonthCellDescriptor>> cells =
+                newMonthCellsBuilder(selectableDays).build(monthKey);
+        applyDayState(monthKey, cells);
+        return cells;
+    }
+
+    private MonthCellsBuilder newMonthCellsBuilder(final SelectableDayCache selectableDays) {
+        return new MonthCellsBuilder(dayCalendar, minDay, maxDay,
+                dayCalendar.toDay(today.getTimeInMillis()), selectableDays);
+    }
+
+    /**
+     * Whether {@code day} is between minDate (inclusive) and maxDate (exclusive).
+     */
+    private boolean isInRange(final int day) {
+        return day >= minDay && day <= maxDay;
+    }
+
+    void setOnDateSelectedListener(final OnDateSelectedListener listener) {
+        dateListener = listener;
+    }
+
+    void setOnInvalidDateSelectedListener(final OnInvalidDateSelectedListener listener) {
+        invalidDateListener = listener;
+    }
+
+    void setDateSelectableFilter(final DateSelectableFilter listener) {
+        dateConfiguredListener = listener;
+        if (dayCalendar != null) {
+            selectableDays = new SelectableDayCache(dayCalendar, listener, minDay);
+            // Months still being built in the background asked the old filter, and so did the
+            // months already built: rebuild and rebind all of them, like invalidateSelectableDates.
+            buildGeneration++;
+            cells.clear();
+            decorationCache.invalidate(minDay, maxDay);
+            invalidateDays(minDay, maxDay, MonthView.CHANGE_ALL);
+            updateDirtyMonths();
+        }
+    }
+
+    void invalidateSelectableDates(final Date fromDate, final Date toDate) {
+        final int fromDay = Math.max(dayCalendar.toDay(fromDate), minDay);
+        final int toDay = Math.min(dayCalendar.toDay(toDate), maxDay);
+        if (fromDay > toDay) {
+            return;
+        }
+        selectableDays.invalidate(fromDay, toDay);
+        // Months still being built in the background may have asked about these days already.
+        buildGeneration++;
+        for (int index = getMonthIndex(fromDay); index <= getMonthIndex(toDay); index++) {
+            cells.remove(index);
+        }
+        // The months are bound again from scratch: decorators get to see the new state too.
+        decorationCache.invalidate(fromDay, toDay);
+        invalidateDays(fromDay, toDay, MonthView.CHANGE_ALL);
+        updateDirtyMonths();
+    }
+
+    void invalidateDecorations(final Date fromDate, final Date toDate) {
+        final int fromDay = Math.max(dayCalendar.toDay(fromDate), getFirstGridDay());
+        final int toDay = Math.min(dayCalendar.toDay(toDate), getLastGridDay());
+        if (fromDay > toDay) {
+            return;
+        }
+        decorationCache.invalidate(fromDay, toDay);
+        invalidateDays(fromDay, toDay, MonthView.CHANGE_DECORATIONS);
+        updateDirtyMonths();
+    }
+
+    void invalidateDecorations(final Collection<Date> dates) {
+        final int firstGridDay = getFirstGridDay();
+        final int lastGridDay = getLastGridDay();
+        for (final Date date : dates) {
+            final int day = dayCalendar.toDay(date);
+            if (day >= firstGridDay && day <= lastGridDay) {
+                decorationCache.invalidate(day, day);
+                invalidateDays(day, day, MonthView.CHANGE_DECORATIONS);
+            }
+        }
+        updateDirtyMonths();
+    }
+
+    /**
+     * Returns the first day shown by any month, which may be before minDate: cells outside the
+     * range are decorated too.
+     */
+    private int getFirstGridDay() {
+        return dayCalendar.gridStart(minMonthKey);
+    }
+
+    private int getLastGridDay() {
+        final int lastMonthKey = minMonthKey + monthCount - 1;
+        return dayCalendar.gridStart(lastMonthKey) + dayCalendar.weeksInGrid(lastMonthKey) * 7 - 1;
+    }
+
+    /**
+     * Decorates the bound months again after the decorators changed.  Switching to or from
+     * drawing on a canvas needs new views, though.
+     */
+    private void onDecoratorsChanged(final boolean usedCanvas) {
+        decorationCache.invalidateAll();
+        if (usesCanvas() != usedCanvas) {
+            monthViewKey = null;
+            host.refreshMonths();
+            return;
+        }
+        final int firstPosition = host.getFirstBoundPosition();
+        final int endPosition = firstPosition + host.getBoundCount();
+        for (int position = firstPosition; position < endPosition; position++) {
+            markDirty(position, MonthView.CHANGE_DECORATIONS);
+        }
+        updateDirtyMonths();
+    }
+
+    void setDecorators(final List<CalendarCellDecorator> decorators) {
+        final boolean usedCanvas = usesCanvas();
+        this.decorators = decorators;
+        onDecoratorsChanged(usedCanvas);
+    }
+
+    List<CalendarCellDecorator> getDecorators() {
+        return decorators;
+    }
+
+    void setMonthDecorators(final List<CalendarMonthDecorator> monthDecorators) {
+        final boolean usedCanvas = usesCanvas();
+        this.monthDecorators = monthDecorators;
+        onDecoratorsChanged(usedCanvas);
+    }
+
+    List<CalendarMonthDecorator> getMonthDecorators() {
+        return monthDecorators;
+    }
+
+    @SuppressWarnings("unchecked") // The decorator only gets back the data it loaded itself.
+    <T> void setAsyncMonthDecorator(final AsyncCalendarMonthDecorator<T> decorator,
+                                    final Executor executor) {
+        if (decorator != null && executor == null) {
+            throw new IllegalArgumentException("Executor is null.");
+        }
+        final boolean usedCanvas = usesCanvas();
+        asyncDecorator = (AsyncCalendarMonthDecorator<Object>) decorator;
+        asyncDecoratorExecutor = executor;
+        onDecoratorsChanged(usedCanvas);
+    }
+
+    void setCustomDayView(final DayViewAdapter dayViewAdapter) {
+        this.dayViewAdapter = dayViewAdapter;
+        monthViewKey = null;
+        host.refreshMonths();
+    }
+
+    void setDrawMonthsOnCanvas(final boolean drawMonthsOnCanvas) {
+        this.drawMonthsOnCanvas = drawMonthsOnCanvas;
+        monthViewKey = null;
+        host.refreshMonths();
+    }
+
+    void setCellClickInterceptor(final CellClickInterceptor listener) {
+        cellClickInterceptor = listener;
+    }
+
+    private class DefaultOnInvalidDateSelectedListener implements OnInvalidDateSelectedListener {
+        @Override
+        public void onInvalidDateSelected(final Date date) {
+            if (ignoreValidatingDates) {
+                return;
+            }
+            final Context context = host.getContext();
+            final String errMessage =
+                    context.getResources().getString(R.string.invalid_date,
+                            fullDateFormat.format(minCal.getTime()),
+                            fullDateFormat.format(maxCal.getTime()));
+            Toast.makeText(context, errMessage, Toast.LENGTH_SHORT).show();
+        }
+    }
+}
@@ -3,35 +3,30 @@ package com.squareup.timessquare;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.Resources;
-import android.content.res.TypedArray;
 import android.graphics.Typeface;
 import android.util.AttributeSet;
-import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ListView;
-import android.widget.Toast;
 
-import com.squareup.timessquare.MonthCellDescriptor.RangeState;
-
-import java.text.DateFormat;
-import java.text.DateFormatSymbols;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 /**
  * Android component to allow picking a date from a calendar view (a list of months).  Must be
  * initialized after inflation with {@link #init(Date, Date)} and can be customized with any of the
  * {@link FluentInitializer} methods returned.  The currently selected date can be retrieved with
  * {@link #getSelectedDate()}.
+ * <p/>
+ * {@link CalendarRecyclerView} offers the same API on top of a RecyclerView.
  */
 public class CalendarPickerView extends ListView {
     public enum SelectionMode {
@@ -50,96 +45,102 @@ public class CalendarPickerView extends ListView {
          * <li>Have a range selected and select another date (even if it's in the current range).</li>
          * <li>Have one date selected and then select an earlier date.</li>
          * </ul>
+         * A range can also be selected by pressing and holding one end, then dragging to the other.
          */
         RANGE,
-        RANGE_ON_TWO_SCREENS
+        RANGE_ON_TWO_SCREENS,
+        /**
+         * Allows you to select several date ranges.  Selecting a date starts a range and selecting
+         * another ends it; ranges that overlap or touch are merged.  Selecting a date of a range
+         * while none is being started unselects the whole range.  Initially selected dates are
+         * selected as ranges of one day, so consecutive dates make up a range.
+         */
+        MULTI_RANGE
     }
 
+    final CalendarPickerController controller;
     private final CalendarPickerView.MonthAdapter adapter;
-    private final List<List<List<MonthCellDescriptor>>> cells = new ArrayList<>();
-    final MonthView.Listener listener = new CellClickedListener();
-    final List<MonthDescriptor> months = new ArrayList<>();
-    final List<MonthCellDescriptor> selectedCells = new ArrayList<>();
-    final List<MonthCellDescriptor> highlightedCells = new ArrayList<>();
-    final List<Calendar> selectedCals = new ArrayList<>();
-    final List<Calendar> highlightedCals = new ArrayList<>();
-    private Locale locale;
-    private DateFormat monthNameFormat;
-    private DateFormat weekdayNameFormat;
-    private DateFormat fullDateFormat;
-    private Calendar minCal;
-    private Calendar maxCal;
-    private Calendar monthCounter;
-    private boolean displayOnly;
-    SelectionMode selectionMode;
-    Calendar today;
-    private final int dividerColor;
-    private final int dayBackgroundResId;
-    private final int dayTextColorResId;
-    private final int titleTextColor;
-    private final boolean displayHeader;
-    private final int headerTextColor;
-    private Typeface titleTypeface;
-    private Typeface dateTypeface;
-
-    private OnDateSelectedListener dateListener;
-    private DateSelectableFilter dateConfiguredListener;
-    private OnInvalidDateSelectedListener invalidDateListener =
-            new DefaultOnInvalidDateSelectedListener();
-    private CellClickInterceptor cellClickInterceptor;
-    private List<CalendarCellDecorator> decorators;
-    private DayViewAdapter dayViewAdapter = new DefaultDayViewAdapter();
-
-    private PeakDate peakDate;
-    private boolean ignoreValidatingDates;
+    private final RangeDragHelper rangeDragHelper;
 
     public void setDecorators(final List<CalendarCellDecorator> decorators) {
-        this.decorators = decorators;
-        if (adapter != null) {
-            adapter.notifyDataSetChanged();
-        }
+        controller.setDecorators(decorators);
     }
 
     public List<CalendarCellDecorator> getDecorators() {
-        return decorators;
+        return controller.getDecorators();
+    }
+
+    /**
+     * Sets decorators that decorate a whole month at once, run after the per-cell
+     * {@link #setDecorators decorators}.  Use them when decorating a day needs data that's cheaper
+     * to fetch for a month than for each day.
+     */
+    public void setMonthDecorators(final List<CalendarMonthDecorator> monthDecorators) {
+        controller.setMonthDecorators(monthDecorators);
+    }
+
+    public List<CalendarMonthDecorator> getMonthDecorators() {
+        return controller.getMonthDecorators();
+    }
+
+    /**
+     * Sets a decorator whose data is loaded on {@code executor}, off the UI thread: see
+     * {@link AsyncCalendarMonthDecorator}.  It runs after the other decorators.  Pass null to
+     * remove it.
+     */
+    public <T> void setAsyncMonthDecorator(final AsyncCalendarMonthDecorator<T> decorator,
+                                           final Executor executor) {
+        controller.setAsyncMonthDecorator(decorator, executor);
+    }
+
+    /**
+     * Tells the picker that the decorations of the dates from {@code fromDate} to {@code toDate},
+     * both inclusive, changed.  Cells keep their decorations until they show another day, so only
+     * these dates are decorated again: the other cells of their months are left alone.
+     */
+    public void invalidateDecorations(final Date fromDate, final Date toDate) {
+        controller.invalidateDecorations(fromDate, toDate);
+    }
+
+    /**
+     * Tells the picker that the decorations of {@code dates} changed.  See
+     * {@link #invalidateDecorations(Date, Date)}.
+     */
+    public void invalidateDecorations(final Collection<Date> dates) {
+        controller.invalidateDecorations(dates);
     }
 
     public CalendarPickerView(final Context context, final AttributeSet attrs) {
         super(context, attrs);
 
-        final Resources res = context.getResources();
-        final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CalendarPickerView);
-        final int bg = a.getColor(R.styleable.CalendarPickerView_android_background,
-                res.getColor(R.color.calendar_bg));
-        dividerColor = a.getColor(R.styleable.CalendarPickerView_tsquare_dividerColor,
-                res.getColor(R.color.calendar_divider));
-        dayBackgroundResId = a.getResourceId(R.styleable.CalendarPickerView_tsquare_dayBackground,
-                R.drawable.calendar_bg_selector);
-        dayTextColorResId = a.getResourceId(R.styleable.CalendarPickerView_tsquare_dayTextColor,
-                R.color.calendar_text_selector);
-        titleTextColor = a.getColor(R.styleable.CalendarPickerView_tsquare_titleTextColor,
-                res.getColor(R.color.calendar_text_active));
-        displayHeader = a.getBoolean(R.styleable.CalendarPickerView_tsquare_displayHeader, true);
-        headerTextColor = a.getColor(R.styleable.CalendarPickerView_tsquare_headerTextColor,
-                res.getColor(R.color.calendar_text_active));
-        a.recycle();
+        controller = new CalendarPickerController(context, attrs, new ListHost());
+        rangeDragHelper = new RangeDragHelper(this, controller, new RangeDragHelper.Callback() {
+            @Override
+            public void onPickerTouchEvent(final MotionEvent event) {
+                CalendarPickerView.super.onTouchEvent(event);
+            }
 
+            @Override
+            public void scrollContentBy(final int dy) {
+                smoothScrollBy(dy, 0);
+            }
+        });
+        final int bg = controller.getBackgroundColor();
         adapter = new MonthAdapter();
         setDivider(null);
         setDividerHeight(0);
         setBackgroundColor(bg);
         setCacheColorHint(bg);
-        locale = Locale.getDefault();
-        today = Calendar.getInstance(locale);
-        minCal = Calendar.getInstance(locale);
-        maxCal = Calendar.getInstance(locale);
-        monthCounter = Calendar.getInstance(locale);
-        monthNameFormat = new SimpleDateFormat(context.getString(R.string.month_name_format), locale);
-        weekdayNameFormat = new SimpleDateFormat(context.getString(R.string.day_name_format), locale);
-        fullDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM, locale);
+        // Let other pickers sharing the pool, and this one, reuse the views the list recycles.
+        setRecyclerListener(new RecyclerListener() {
+            @Override
+            public void onMovedToScrapHeap(final View view) {
+                controller.releaseMonthView(view);
+            }
+        });
 
         if (isInEditMode()) {
-            final Calendar nextYear = Calendar.getInstance(locale);
+            final Calendar nextYear = Calendar.getInstance(Locale.getDefault());
             nextYear.add(Calendar.YEAR, 1);
 
             init(new Date(), nextYear.getTime()) //
@@ -165,75 +166,18 @@ public class CalendarPickerView extends ListView {
      * @param maxDate Latest selectable date, exclusive.  Must be later than {@code minDate}.
      */
     public FluentInitializer init(final Date minDate, final Date maxDate, final Locale locale) {
-        if (minDate == null || maxDate == null) {
-            throw new IllegalArgumentException(
-                    "minDate and maxDate must be non-null.  " + dbg(minDate, maxDate));
-        }
-        if (minDate.after(maxDate)) {
-            throw new IllegalArgumentException(
-                    "minDate must be before maxDate.  " + dbg(minDate, maxDate));
-        }
-        if (locale == null) {
-            throw new IllegalArgumentException("Locale is null.");
-        }
-
-        // Make sure that all calendar instances use the same locale.
-        this.locale = locale;
-        today = Calendar.getInstance(locale);
-        minCal = Calendar.getInstance(locale);
-        maxCal = Calendar.getInstance(locale);
-        monthCounter = Calendar.getInstance(locale);
-        monthNameFormat =
-                new SimpleDateFormat(getContext().getString(R.string.month_name_format), locale);
-        for (final MonthDescriptor month : months) {
-            month.setLabel(monthNameFormat.format(month.getDate()));
-        }
-        weekdayNameFormat =
-                new SimpleDateFormat(getContext().getString(R.string.day_name_format), locale);
-        fullDateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM, locale);
-
-        this.selectionMode = SelectionMode.SINGLE;
-        // Clear out any previously-selected dates/cells.
-        selectedCals.clear();
-        selectedCells.clear();
-        highlightedCals.clear();
-        highlightedCells.clear();
-
-        peakDate = null;
-        ignoreValidatingDates = false;
-
-        // Clear previous state.
-        cells.clear();
-        months.clear();
-        minCal.setTime(minDate);
-        maxCal.setTime(maxDate);
-        setMidnight(minCal);
-        setMidnight(maxCal);
-        displayOnly = false;
-
-        // maxDate is exclusive: bump back to the previous day so if maxDate is the first of a month,
-        // we don't accidentally include that month in the view.
-        maxCal.add(Calendar.MINUTE, -1);
-
-        // Now iterate between minCal and maxCal and build up our list of months to show.
-        monthCounter.setTime(minCal.getTime());
-        final int maxMonth = maxCal.get(Calendar.MONTH);
-        final int maxYear = maxCal.get(Calendar.YEAR);
-        while ((monthCounter.get(Calendar.MONTH) <= maxMonth // Up to, including the month.
-                || monthCounter.get(Calendar.YEAR) < maxYear) // Up to the year.
-                && monthCounter.get(Calendar.YEAR) < maxYear + 1) { // But not > next yr.
-            final Date date = monthCounter.getTime();
-            final MonthDescriptor month =
-                    new MonthDescriptor(monthCounter.get(Calendar.MONTH), monthCounter.get(Calendar.YEAR), date,
-                            monthNameFormat.format(date));
-            cells.add(getMonthCells(month, monthCounter));
-            Logr.d("Adding month %s", month);
-            months.add(month);
-            monthCounter.add(Calendar.MONTH, 1);
-        }
+        return controller.init(minDate, maxDate, locale);
+    }
 
-        validateAndUpdate();
-        return new FluentInitializer();
+    /**
+     * Like {@link #init(Date, Date, Locale)}, but without a practical end: the user can keep
+     * scrolling forward for 1000 years.  Only the months around the visible one are kept in
+     * memory, however far the user scrolls.
+     *
+     * @param minDate Earliest selectable date, inclusive.
+     */
+    public FluentInitializer initOpenEnded(final Date minDate, final Locale locale) {
+        return controller.initOpenEnded(minDate, locale);
     }
 
     /**
@@ -257,13 +201,22 @@ public class CalendarPickerView extends ListView {
         return init(minDate, maxDate, Locale.getDefault());
     }
 
-    public class FluentInitializer {
+    /**
+     * Returned by the {@code init} methods of {@link CalendarPickerView} and
+     * {@link CalendarRecyclerView} to set up the picker further.
+     */
+    public static class FluentInitializer {
+        private final CalendarPickerController controller;
+
+        FluentInitializer(final CalendarPickerController controller) {
+            this.controller = controller;
+        }
+
         /**
          * Override the {@link SelectionMode} from the default ({@link SelectionMode#SINGLE}).
          */
         public FluentInitializer inMode(final SelectionMode mode) {
-            selectionMode = mode;
-            validateAndUpdate();
+            controller.setSelectionMode(mode);
             return this;
         }
 
@@ -280,26 +233,12 @@ public class CalendarPickerView extends ListView {
          * pass in multiple dates and haven't already called {@link #inMode(SelectionMode)}.
          */
         public FluentInitializer withSelectedDates(final Collection<Date> selectedDates) {
-            if (selectionMode == SelectionMode.SINGLE && selectedDates.size() > 1) {
-                throw new IllegalArgumentException("SINGLE mode can't be used with multiple selectedDates");
-            }
-            if (selectionMode == SelectionMode.RANGE && selectedDates.size() > 2) {
-                throw new IllegalArgumentException(
-                        "RANGE mode only allows two selectedDates.  You tried to pass " + selectedDates.size());
-            }
-            if (selectedDates != null) {
-                for (final Date date : selectedDates) {
-                    selectDate(date);
-                }
-            }
-            scrollToSelectedDates();
-
-            validateAndUpdate();
+            controller.selectInitialDates(selectedDates);
             return this;
         }
 
         public FluentInitializer withHighlightedDates(final Collection<Date> dates) {
-            highlightDates(dates);
+            controller.highlightDates(dates);
             return this;
         }
 
@@ -309,98 +248,43 @@ public class CalendarPickerView extends ListView {
 
         @SuppressLint("SimpleDateFormat")
         public FluentInitializer setShortWeekdays(final String... newShortWeekdays) {
-            final DateFormatSymbols symbols = new DateFormatSymbols(locale);
-            symbols.setShortWeekdays(newShortWeekdays);
-            weekdayNameFormat =
-                    new SimpleDateFormat(getContext().getString(R.string.day_name_format), symbols);
+            controller.setShortWeekdays(newShortWeekdays);
             return this;
         }
 
         public FluentInitializer displayOnly() {
-            displayOnly = true;
+            controller.setDisplayOnly();
             return this;
         }
 
         public FluentInitializer setPeakDate(final PeakDate peakDate) {
-            CalendarPickerView.this.peakDate = peakDate;
+            controller.setPeakDate(peakDate);
             return this;
         }
 
         public FluentInitializer ignoreValidatingDates(final boolean ignoreValidatingDates) {
-            CalendarPickerView.this.ignoreValidatingDates = ignoreValidatingDates;
+            controller.setIgnoreValidatingDates(ignoreValidatingDates);
             return this;
         }
 
-    }
-
-    private void validateAndUpdate() {
-        if (getAdapter() == null) {
-            setAdapter(adapter);
+        /**
+         * Builds the grids of the months around the first selected date (or today) on
+         * {@code executor} instead of when they're first shown, nearest months first.  The
+         * months are handed to the picker a few at a time; a month that scrolls into view before
+         * its turn is still built right away.
+         * <p/>
+         * Call this after setting the selected dates.  The {@link DateSelectableFilter} will be
+         * called on the executor's thread.
+         */
+        public FluentInitializer buildInBackground(final Executor executor) {
+            controller.buildInBackground(executor);
+            return this;
         }
-        adapter.notifyDataSetChanged();
-    }
 
-    private void scrollToSelectedMonth(final int selectedIndex) {
-        scrollToSelectedMonth(selectedIndex, false);
-    }
-
-    private void scrollToSelectedMonth(final int selectedIndex, final boolean smoothScroll) {
-        post(new Runnable() {
-            @Override
-            public void run() {
-                Logr.d("Scrolling to position %d", selectedIndex);
-
-                if (smoothScroll) {
-                    smoothScrollToPosition(selectedIndex);
-                } else {
-                    setSelection(selectedIndex);
-                }
-            }
-        });
-    }
-
-    private void scrollToSelectedDates() {
-        Integer selectedIndex = null;
-        Integer todayIndex = null;
-        final Calendar today = Calendar.getInstance(locale);
-        for (int c = 0; c < months.size(); c++) {
-            final MonthDescriptor month = months.get(c);
-            if (selectedIndex == null) {
-                for (final Calendar selectedCal : selectedCals) {
-                    if (sameMonth(selectedCal, month)) {
-                        selectedIndex = c;
-                        break;
-                    }
-                }
-                if (selectedIndex == null && todayIndex == null && sameMonth(today, month)) {
-                    todayIndex = c;
-                }
-            }
-        }
-        if (selectedIndex != null) {
-            scrollToSelectedMonth(selectedIndex);
-        } else if (todayIndex != null) {
-            scrollToSelectedMonth(todayIndex);
-        }
     }
 
     public boolean scrollToDate(final Date date) {
-        Integer selectedIndex = null;
-
-        final Calendar cal = Calendar.getInstance(locale);
-        cal.setTime(date);
-        for (int c = 0; c < months.size(); c++) {
-            final MonthDescriptor month = months.get(c);
-            if (sameMonth(cal, month)) {
-                selectedIndex = c;
-                break;
-            }
-        }
-        if (selectedIndex != null) {
-            scrollToSelectedMonth(selectedIndex);
-            return true;
-        }
-        return false;
+        return controller.scrollToDate(date);
     }
 
     /**
@@ -419,7 +303,7 @@ public class CalendarPickerView extends ListView {
             @Override
             public void run() {
                 Logr.d("Dimens are fixed: now scroll to the selected date");
-                scrollToSelectedDates();
+                controller.scrollToSelectedDates();
             }
         });
     }
@@ -428,16 +312,14 @@ public class CalendarPickerView extends ListView {
      * Set the typeface to be used for month titles.
      */
     public void setTitleTypeface(final Typeface titleTypeface) {
-        this.titleTypeface = titleTypeface;
-        validateAndUpdate();
+        controller.setTitleTypeface(titleTypeface);
     }
 
     /**
      * Sets the typeface to be used within the date grid.
      */
     public void setDateTypeface(final Typeface dateTypeface) {
-        this.dateTypeface = dateTypeface;
-        validateAndUpdate();
+        controller.setDateTypeface(dateTypeface);
     }
 
     /**
@@ -462,31 +344,42 @@ public class CalendarPickerView extends ListView {
 
     @Override
     protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
-        if (months.isEmpty()) {
+        if (controller.getMonthCount() == 0) {
             throw new IllegalStateException(
                     "Must have at least one month to display.  Did you forget to call init()?");
         }
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
     }
 
+    @Override
+    public boolean onInterceptTouchEvent(final MotionEvent event) {
+        return rangeDragHelper.onInterceptTouchEvent(event) || super.onInterceptTouchEvent(event);
+    }
+
+    @Override
+    public boolean onTouchEvent(final MotionEvent event) {
+        return rangeDragHelper.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    /**
+     * Returns the earliest selected date, or null if nothing is selected.  When several dates are
+     * selected, that isn't necessarily the one selected first, as it was before 1.6.6: use
+     * {@link #getSelectedDates()}, which is sorted, to get all of them.
+     */
     public Date getSelectedDate() {
-        return (!selectedCals.isEmpty() ? selectedCals.get(0).getTime() : null);
+        return controller.getSelectedDate();
     }
 
     public List<Date> getSelectedDates() {
-        final List<Date> selectedDates = new ArrayList<>();
-        for (final MonthCellDescriptor cal : selectedCells) {
-            selectedDates.add(cal.getDate());
-        }
-        Collections.sort(selectedDates);
-        return selectedDates;
+        return controller.getSelectedDates();
     }
 
     /**
-     * Returns a string summarizing what the client sent us for init() params.
+     * Returns the dates of each range selected in {@link SelectionMode#MULTI_RANGE} mode, in order.
+     * The start of a range still being picked isn't included.
      */
-    private static String dbg(final Date minDate, final Date maxDate) {
-        return "minDate: " + minDate + "\nmaxDate: " + maxDate;
+    public List<List<Date>> getSelectedRanges() {
+        return controller.getSelectedRanges();
     }
 
     /**
@@ -499,32 +392,6 @@ public class CalendarPickerView extends ListView {
         cal.set(Calendar.MILLISECOND, 0);
     }
 
-    private class CellClickedListener implements MonthView.Listener {
-        @Override
-        public void handleClick(final MonthCellDescriptor cell) {
-            final Date clickedDate = cell.getDate();
-
-            if (cellClickInterceptor != null && cellClickInterceptor.onCellClicked(clickedDate)) {
-                return;
-            }
-            if (!betweenDates(clickedDate, minCal, maxCal) || !isDateSelectable(clickedDate)) {
-                if (invalidDateListener != null) {
-                    invalidDateListener.onInvalidDateSelected(clickedDate);
-                }
-            } else {
-                final boolean wasSelected = doSelectDate(clickedDate, cell);
-
-                if (dateListener != null) {
-                    if (wasSelected) {
-                        dateListener.onDateSelected(clickedDate);
-                    } else {
-                        dateListener.onDateUnselected(clickedDate);
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * Select a new date.  Respects the {@link SelectionMode} this CalendarPickerView is configured
      * with: if you are in {@link SelectionMode#SINGLE}, the previously selected date will be
@@ -537,7 +404,7 @@ public class CalendarPickerView extends ListView {
      * @return - whether we were able to set the date
      */
     public boolean selectDate(final Date date) {
-        return selectDate(date, false);
+        return controller.selectDate(date);
     }
 
     /**
@@ -552,264 +419,102 @@ public class CalendarPickerView extends ListView {
      * @return - whether we were able to set the date
      */
     public boolean selectDate(final Date date, final boolean smoothScroll) {
-        validateDate(date);
-
-        final MonthCellWithMonthIndex monthCellWithMonthIndex = getMonthCellWithIndexByDate(date);
-        if (monthCellWithMonthIndex == null || !isDateSelectable(date)) {
-            return false;
-        }
-        final boolean wasSelected = doSelectDate(date, monthCellWithMonthIndex.cell);
-        if (wasSelected) {
-            scrollToSelectedMonth(monthCellWithMonthIndex.monthIndex, smoothScroll);
-        }
-        return wasSelected;
+        return controller.selectDate(date, smoothScroll);
     }
 
-    private void validateDate(final Date date) {
-        if (date == null) {
-            throw new IllegalArgumentException("Selected date must be non-null.");
-        }
-        if (ignoreValidatingDates) {
-            return;
-        }
-        if (date.before(minCal.getTime()) || date.after(maxCal.getTime())) {
-            throw new IllegalArgumentException(String.format(
-                    "SelectedDate must be between minDate and maxDate."
-                            + "%nminDate: %s%nmaxDate: %s%nselectedDate: %s", minCal.getTime(), maxCal.getTime(),
-                    date));
-        }
+    public void highlightDate(final Date date) {
+        highlightDates(Collections.singletonList(date));
     }
 
-    private boolean doSelectDate(Date date, final MonthCellDescriptor cell) {
-        final Calendar newlySelectedCal = Calendar.getInstance(locale);
-        newlySelectedCal.setTime(date);
-        // Sanitize input: clear out the hours/minutes/seconds/millis.
-        setMidnight(newlySelectedCal);
-
-        // Clear any remaining range state.
-        for (final MonthCellDescriptor selectedCell : selectedCells) {
-            selectedCell.setRangeState(RangeState.NONE);
-        }
+    /**
+     * Highlights {@code dates}, in addition to the dates already highlighted.
+     */
+    public void highlightDates(final Collection<Date> dates) {
+        controller.highlightDates(dates);
+    }
 
-        switch (selectionMode) {
-            case RANGE_ON_TWO_SCREENS:
-                clearOldSelections();
-                break;
-            case RANGE:
-                if (selectedCals.size() > 1) {
-                    // We've already got a range selected: clear the old one.
-                    clearOldSelections();
-                } else if (selectedCals.size() == 1 && newlySelectedCal.before(selectedCals.get(0))) {
-                    // We're moving the start of the range back in time: clear the old start date.
-                    clearOldSelections();
-                }
-                break;
+    /**
+     * Highlights exactly {@code dates}, un-highlighting all other dates.  Only the months on screen
+     * whose highlights change are redrawn.
+     */
+    public void setHighlightedDates(final Collection<Date> dates) {
+        controller.setHighlightedDates(dates);
+    }
 
-            case MULTIPLE:
-                date = applyMultiSelect(date, newlySelectedCal);
-                break;
+    public void clearHighlightedDates() {
+        controller.clearHighlightedDates();
+    }
 
-            case SINGLE:
-                clearOldSelections();
-                break;
-            default:
-                throw new IllegalStateException("Unknown selectionMode " + selectionMode);
+    /**
+     * Lets the controller work on the months this list shows.
+     */
+    private class ListHost implements CalendarPickerController.Host {
+        @Override
+        public Context getContext() {
+            return CalendarPickerView.this.getContext();
         }
 
-        if (date != null) {
-            // Select a new cell.
-            if (selectedCells.isEmpty() || !selectedCells.get(0).equals(cell)) {
-                selectedCells.add(cell);
-                cell.setSelected(true);
-            }
-            selectedCals.add(newlySelectedCal);
-
-            if (selectionMode == SelectionMode.RANGE && selectedCells.size() > 1) {
-                // Select all days in between start and end.
-                final Date start = selectedCells.get(0).getDate();
-                final Date end = selectedCells.get(1).getDate();
-                selectedCells.get(0).setRangeState(MonthCellDescriptor.RangeState.FIRST);
-                selectedCells.get(1).setRangeState(MonthCellDescriptor.RangeState.LAST);
-
-                for (final List<List<MonthCellDescriptor>> month : cells) {
-                    for (final List<MonthCellDescriptor> week : month) {
-                        for (final MonthCellDescriptor singleCell : week) {
-                            if (singleCell.getDate().after(start)
-                                    && singleCell.getDate().before(end)
-                                    && singleCell.isSelectable()) {
-                                singleCell.setSelected(true);
-                                singleCell.setRangeState(MonthCellDescriptor.RangeState.MIDDLE);
-                                selectedCells.add(singleCell);
-                            }
-                        }
-                    }
-                }
-            }
-
-            //TODO do not enter this statement if peakDate equals selected Date
-            if (selectionMode == SelectionMode.RANGE_ON_TWO_SCREENS && peakDate != null) {
-                // Select all days in between start and end.
-
-                if (peakDate instanceof LowerPeakDate) {
-                    final MonthCellWithMonthIndex monthCellWithMonthIndex = getMonthCellWithIndexByDate(peakDate.getPeakDate());
-                    if (monthCellWithMonthIndex == null) {
-                        return false;
-                    }
-                    selectedCells.add(0, monthCellWithMonthIndex.cell);
-                } else if (peakDate instanceof HigherPeakDate) {
-                    final MonthCellWithMonthIndex monthCellWithMonthIndex = getMonthCellWithIndexByDate(peakDate.getPeakDate());
-                    if (monthCellWithMonthIndex == null) {
-                        return false;
-                    }
-                    selectedCells.add(1, monthCellWithMonthIndex.cell);
-                } else {
-                    return false;
-                }
-
-                final Date start = selectedCells.get(0).getDate();
-                final Date end = selectedCells.get(1).getDate();
-
-                selectedCells.get(0).setRangeState(MonthCellDescriptor.RangeState.FIRST);
-                selectedCells.get(1).setRangeState(MonthCellDescriptor.RangeState.LAST);
-
-                for (final List<List<MonthCellDescriptor>> month : cells) {
-                    for (final List<MonthCellDescriptor> week : month) {
-                        for (final MonthCellDescriptor singleCell : week) {
-                            if (singleCell.getDate().after(start)
-                                    && singleCell.getDate().before(end)
-                                    && singleCell.isSelectable()) {
-                                singleCell.setSelected(true);
-                                singleCell.setRangeState(MonthCellDescriptor.RangeState.MIDDLE);
-                                selectedCells.add(singleCell);
-                            }
-                        }
-                    }
-                }
-            }
+        @Override
+        public int getFirstBoundPosition() {
+            return getFirstVisiblePosition();
         }
 
-        // Update the adapter.
-        validateAndUpdate();
-        return date != null;
-    }
-
-    private void clearOldSelections() {
-        for (final MonthCellDescriptor selectedCell : selectedCells) {
-            // De-select the currently-selected cell.
-            selectedCell.setSelected(false);
-
-            if (dateListener != null) {
-                final Date selectedDate = selectedCell.getDate();
-
-                if (selectionMode == SelectionMode.RANGE) {
-                    final int index = selectedCells.indexOf(selectedCell);
-                    if (index == 0 || index == selectedCells.size() - 1) {
-                        dateListener.onDateUnselected(selectedDate);
-                    }
-                } else {
-                    dateListener.onDateUnselected(selectedDate);
-                }
-            }
+        @Override
+        public int getBoundCount() {
+            return getChildCount();
         }
-        selectedCells.clear();
-        selectedCals.clear();
-    }
 
-    private Date applyMultiSelect(Date date, final Calendar selectedCal) {
-        for (final MonthCellDescriptor selectedCell : selectedCells) {
-            if (selectedCell.getDate().equals(date)) {
-                // De-select the currently-selected cell.
-                selectedCell.setSelected(false);
-                selectedCells.remove(selectedCell);
-                date = null;
-                break;
-            }
-        }
-        for (final Calendar cal : selectedCals) {
-            if (sameDate(cal, selectedCal)) {
-                selectedCals.remove(cal);
-                break;
+        /**
+         * Updates the on-screen month view at {@code position} in place.
+         */
+        @Override
+        public boolean rebindMonth(final int position, final int changes) {
+            final View child = getChildAt(position - getFirstVisiblePosition());
+            if (getAdapter() == null || child == null || !controller.canRebind(child)) {
+                refreshMonths();
+                return false;
             }
+            controller.updateMonthView(child, position, changes);
+            return true;
         }
-        return date;
-    }
 
-    public void highlightDate(final Date date) {
-        highlightDates(Collections.singletonList(date));
-    }
-
-    public void highlightDates(final Collection<Date> dates) {
-        for (final Date date : dates) {
-            validateDate(date);
-
-            final MonthCellWithMonthIndex monthCellWithMonthIndex = getMonthCellWithIndexByDate(date);
-            if (monthCellWithMonthIndex != null) {
-                final Calendar newlyHighlightedCal = Calendar.getInstance();
-                newlyHighlightedCal.setTime(date);
-                final MonthCellDescriptor cell = monthCellWithMonthIndex.cell;
-
-                highlightedCells.add(cell);
-                highlightedCals.add(newlyHighlightedCal);
-                cell.setHighlighted(true);
+        @Override
+        public void refreshMonths() {
+            if (getAdapter() == null) {
+                setAdapter(adapter);
             }
+            adapter.notifyDataSetChanged();
         }
 
-        validateAndUpdate();
-    }
-
-    public void clearHighlightedDates() {
-        for (final MonthCellDescriptor cal : highlightedCells) {
-            cal.setHighlighted(false);
+        @Override
+        public void scrollToMonth(final int position, final boolean smoothScroll) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    Logr.d("Scrolling to position %d", position);
+
+                    if (smoothScroll) {
+                        smoothScrollToPosition(position);
+                    } else {
+                        setSelection(position);
+                    }
+                }
+            });
         }
-        highlightedCells.clear();
-        highlightedCals.clear();
-
-        validateAndUpdate();
-    }
 
-    /**
-     * Hold a cell with a month-index.
-     */
-    private static class MonthCellWithMonthIndex {
-        public MonthCellDescriptor cell;
-        public int monthIndex;
-
-        public MonthCellWithMonthIndex(final MonthCellDescriptor cell, final int monthIndex) {
-            this.cell = cell;
-            this.monthIndex = monthIndex;
+        @Override
+        public void prepareMonthView() {
+            controller.addPreparedMonthView(
+                    controller.inflateMonthView(CalendarPickerView.this));
         }
-    }
 
-    /**
-     * Return cell and month-index (for scrolling) for a given Date.
-     */
-    private MonthCellWithMonthIndex getMonthCellWithIndexByDate(final Date date) {
-        int index = 0;
-        final Calendar searchCal = Calendar.getInstance(locale);
-        searchCal.setTime(date);
-        final Calendar actCal = Calendar.getInstance(locale);
-
-        for (final List<List<MonthCellDescriptor>> monthCells : cells) {
-            for (final List<MonthCellDescriptor> weekCells : monthCells) {
-                for (final MonthCellDescriptor actCell : weekCells) {
-                    actCal.setTime(actCell.getDate());
-                    if (sameDate(actCal, searchCal) && actCell.isSelectable()) {
-                        return new MonthCellWithMonthIndex(actCell, index);
-                    }
-                }
-            }
-            index++;
+        @Override
+        public boolean post(final Runnable action) {
+            return CalendarPickerView.this.post(action);
         }
-        return null;
     }
 
     private class MonthAdapter extends BaseAdapter {
-        private final LayoutInflater inflater;
-
-        private MonthAdapter() {
-            inflater = LayoutInflater.from(getContext());
-        }
-
         @Override
         public boolean isEnabled(final int position) {
             // Disable selectability: each cell will handle that itself.
@@ -818,12 +523,12 @@ public class CalendarPickerView extends ListView {
 
         @Override
         public int getCount() {
-            return months.size();
+            return controller.getMonthCount();
         }
 
         @Override
         public Object getItem(final int position) {
-            return months.get(position);
+            return controller.getMonth(position);
         }
 
         @Override
@@ -833,131 +538,24 @@ public class CalendarPickerView extends ListView {
 
         @Override
         public View getView(final int position, final View convertView, final ViewGroup parent) {
-            MonthView monthView = (MonthView) convertView;
-            if (monthView == null
-                    || !monthView.getTag(R.id.day_view_adapter_class).equals(dayViewAdapter.getClass())) {
-                monthView =
-                        MonthView.create(parent, inflater, weekdayNameFormat, listener, today, dividerColor,
-                                dayBackgroundResId, dayTextColorResId, titleTextColor, displayHeader,
-                                headerTextColor, decorators, locale, dayViewAdapter);
-                monthView.setTag(R.id.day_view_adapter_class, dayViewAdapter.getClass());
-            } else {
-                monthView.setDecorators(decorators);
+            View monthView = convertView;
+            // The list's recycled views went to the pool: another picker may have taken this one.
+            if (monthView != null && !controller.reclaimMonthView(monthView)) {
+                monthView = null;
             }
-            monthView.init(months.get(position), cells.get(position), displayOnly, titleTypeface,
-                    dateTypeface);
-            return monthView;
-        }
-    }
-
-    List<List<MonthCellDescriptor>> getMonthCells(final MonthDescriptor month, final Calendar startCal) {
-        final Calendar cal = Calendar.getInstance(locale);
-        cal.setTime(startCal.getTime());
-        final List<List<MonthCellDescriptor>> cells = new ArrayList<>();
-        cal.set(Calendar.DAY_OF_MONTH, 1);
-        final int firstDayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
-        int offset = cal.getFirstDayOfWeek() - firstDayOfWeek;
-        if (offset > 0) {
-            offset -= 7;
-        }
-        cal.add(Calendar.DATE, offset);
-
-        final Calendar minSelectedCal = minDate(selectedCals);
-        final Calendar maxSelectedCal = maxDate(selectedCals);
-
-        while ((cal.get(Calendar.MONTH) < month.getMonth() + 1 || cal.get(Calendar.YEAR) < month.getYear()) //
-                && cal.get(Calendar.YEAR) <= month.getYear()) {
-            Logr.d("Building week row starting at %s", cal.getTime());
-            final List<MonthCellDescriptor> weekCells = new ArrayList<>();
-            cells.add(weekCells);
-            for (int c = 0; c < 7; c++) {
-                final Date date = cal.getTime();
-                final boolean isCurrentMonth = cal.get(Calendar.MONTH) == month.getMonth();
-                final boolean isSelected = isCurrentMonth && containsDate(selectedCals, cal);
-                final boolean isSelectable =
-                        isCurrentMonth && betweenDates(cal, minCal, maxCal) && isDateSelectable(date);
-                final boolean isToday = sameDate(cal, today);
-                final boolean isHighlighted = containsDate(highlightedCals, cal);
-                final int value = cal.get(Calendar.DAY_OF_MONTH);
-
-                MonthCellDescriptor.RangeState rangeState = MonthCellDescriptor.RangeState.NONE;
-                if (selectedCals.size() > 1) {
-                    if (sameDate(minSelectedCal, cal)) {
-                        rangeState = MonthCellDescriptor.RangeState.FIRST;
-                    } else if (sameDate(maxDate(selectedCals), cal)) {
-                        rangeState = MonthCellDescriptor.RangeState.LAST;
-                    } else if (betweenDates(cal, minSelectedCal, maxSelectedCal)) {
-                        rangeState = MonthCellDescriptor.RangeState.MIDDLE;
-                    }
+            if (monthView == null || !controller.canRebind(monthView)) {
+                if (monthView != null) {
+                    controller.releaseMonthView(monthView);
                 }
-
-                weekCells.add(
-                        new MonthCellDescriptor(date, isCurrentMonth, isSelectable, isSelected, isToday,
-                                isHighlighted, value, rangeState));
-                cal.add(Calendar.DATE, 1);
-            }
-        }
-        return cells;
-    }
-
-    private boolean containsDate(final List<Calendar> selectedCals, final Date date) {
-        final Calendar cal = Calendar.getInstance(locale);
-        cal.setTime(date);
-        return containsDate(selectedCals, cal);
-    }
-
-    private static boolean containsDate(final List<Calendar> selectedCals, final Calendar cal) {
-        for (final Calendar selectedCal : selectedCals) {
-            if (sameDate(cal, selectedCal)) {
-                return true;
+                monthView = controller.createMonthView(parent);
             }
+            controller.bindMonthView(monthView, position);
+            return monthView;
         }
-        return false;
-    }
-
-    private static Calendar minDate(final List<Calendar> selectedCals) {
-        if (selectedCals == null || selectedCals.isEmpty()) {
-            return null;
-        }
-        Collections.sort(selectedCals);
-        return selectedCals.get(0);
-    }
-
-    private static Calendar maxDate(final List<Calendar> selectedCals) {
-        if (selectedCals == null || selectedCals.isEmpty()) {
-            return null;
-        }
-        Collections.sort(selectedCals);
-        return selectedCals.get(selectedCals.size() - 1);
-    }
-
-    private static boolean sameDate(final Calendar cal, final Calendar selectedDate) {
-        return cal.get(Calendar.MONTH) == selectedDate.get(Calendar.MONTH)
-                && cal.get(Calendar.YEAR) == selectedDate.get(Calendar.YEAR)
-                && cal.get(Calendar.DAY_OF_MONTH) == selectedDate.get(Calendar.DAY_OF_MONTH);
-    }
-
-    private static boolean betweenDates(final Calendar cal, final Calendar minCal, final Calendar maxCal) {
-        final Date date = cal.getTime();
-        return betweenDates(date, minCal, maxCal);
-    }
-
-    static boolean betweenDates(final Date date, final Calendar minCal, final Calendar maxCal) {
-        final Date min = minCal.getTime();
-        return (date.equals(min) || date.after(min)) // >= minCal
-                && date.before(maxCal.getTime()); // && < maxCal
-    }
-
-    private static boolean sameMonth(final Calendar cal, final MonthDescriptor month) {
-        return (cal.get(Calendar.MONTH) == month.getMonth() && cal.get(Calendar.YEAR) == month.getYear());
-    }
-
-    private boolean isDateSelectable(final Date date) {
-        return dateConfiguredListener == null || dateConfiguredListener.isDateSelectable(date);
     }
 
     public void setOnDateSelectedListener(final OnDateSelectedListener listener) {
-        dateListener = listener;
+        controller.setOnDateSelectedListener(listener);
     }
 
     /**
@@ -966,39 +564,87 @@ public class CalendarPickerView extends ListView {
      * @param listener the listener to set, or null for no reaction
      */
     public void setOnInvalidDateSelectedListener(final OnInvalidDateSelectedListener listener) {
-        invalidDateListener = listener;
+        controller.setOnInvalidDateSelectedListener(listener);
     }
 
     /**
      * Set a listener used to discriminate between selectable and unselectable dates. Set this to
      * disable arbitrary dates as they are rendered.
      * <p/>
-     * Important: set this before you call {@link #init(Date, Date)} methods.  If called afterwards,
-     * it will not be consistently applied.
+     * Preferably set this before you call {@link #init(Date, Date)} methods.  If called afterwards,
+     * all the months are rebuilt with the new filter and their cells decorated again.
      */
     public void setDateSelectableFilter(final DateSelectableFilter listener) {
-        dateConfiguredListener = listener;
+        controller.setDateSelectableFilter(listener);
+    }
+
+    /**
+     * Tells the picker that the {@link DateSelectableFilter} may now answer differently for the
+     * dates from {@code fromDate} to {@code toDate}, both inclusive.  The picker only asks the
+     * filter about a date once and remembers the answer until this is called.  The months
+     * containing those dates are rebuilt and their cells decorated again.
+     */
+    public void invalidateSelectableDates(final Date fromDate, final Date toDate) {
+        controller.invalidateSelectableDates(fromDate, toDate);
     }
 
 
     /**
      * Set an adapter used to initialize {@link CalendarCellView} with custom layout.
      * <p/>
-     * Important: set this before you call {@link #init(Date, Date)} methods.  If called afterwards,
-     * it will not be consistently applied.
+     * Preferably set this before you call {@link #init(Date, Date)} methods.  If called afterwards,
+     * all the months are rebuilt with the new filter and their cells decorated again.
      */
     public void setCustomDayView(final DayViewAdapter dayViewAdapter) {
-        this.dayViewAdapter = dayViewAdapter;
-        if (adapter != null) {
-            adapter.notifyDataSetChanged();
-        }
+        controller.setCustomDayView(dayViewAdapter);
+    }
+
+    /**
+     * Draws each month on a single canvas with a {@link MonthCanvasView} instead of a view per day,
+     * which makes months much cheaper to lay out and draw.  Has no effect while a custom
+     * {@link DayViewAdapter} or decorators are set.  Can also be set with the
+     * {@code tsquare_drawMonthsOnCanvas} attribute.
+     */
+    public void setDrawMonthsOnCanvas(final boolean drawMonthsOnCanvas) {
+        controller.setDrawMonthsOnCanvas(drawMonthsOnCanvas);
+    }
+
+    /**
+     * Creates {@code count} month views ahead of time, while the main thread is idle, and keeps
+     * them in this picker's {@link MonthViewPool} for it, or any other picker sharing the pool, to
+     * use.  Call it once the picker is configured: views are only used by pickers with the same
+     * {@link DayViewAdapter}, style and locale.  For instance, to open a dialog quickly:
+     * <pre>
+     * // In onCreate().
+     * MonthViewPool dialogMonthViews = new MonthViewPool();
+     * CalendarPickerView warmUp = (CalendarPickerView) inflater.inflate(R.layout.dialog, null);
+     * warmUp.init(minDate, maxDate);
+     * warmUp.setMonthViewPool(dialogMonthViews);
+     * warmUp.prepareMonthViews(3);
+     *
+     * // When the dialog is shown.
+     * dialogView.setMonthViewPool(dialogMonthViews);
+     * </pre>
+     * The pool keeps at most as many views as it was created with room for.
+     */
+    public void prepareMonthViews(final int count) {
+        controller.prepareMonthViews(count);
+    }
+
+    /**
+     * Shares month views with the other {@link CalendarPickerView}s using {@code monthViewPool}:
+     * the views this picker's list recycles go to the pool, and it takes views from the pool
+     * before inflating new ones.  By default, each picker has a pool of its own.
+     */
+    public void setMonthViewPool(final MonthViewPool monthViewPool) {
+        controller.setMonthViewPool(monthViewPool);
     }
 
     /**
      * Set a listener to intercept clicks on calendar cells.
      */
     public void setCellClickInterceptor(final CellClickInterceptor listener) {
-        cellClickInterceptor = listener;
+        controller.setCellClickInterceptor(listener);
     }
 
     /**
@@ -1027,7 +673,8 @@ public class CalendarPickerView extends ListView {
 
     /**
      * Interface used for determining the selectability of a date cell when it is configured for
-     * display on the calendar.
+     * display on the calendar.  The answer for each date is remembered: see
+     * {@link #invalidateSelectableDates(Date, Date)}.
      *
      * @see #setDateSelectableFilter(DateSelectableFilter)
      */
@@ -1035,6 +682,20 @@ public class CalendarPickerView extends ListView {
         boolean isDateSelectable(Date date);
     }
 
+    /**
+     * A {@link DateSelectableFilter} that can answer for a run of dates in one call.  The picker
+     * uses it to ask about a whole month at a time.
+     *
+     * @see #setDateSelectableFilter(DateSelectableFilter)
+     */
+    public interface BatchDateSelectableFilter extends DateSelectableFilter {
+        /**
+         * Returns a set with bit {@code i} set if the date {@code i} days after {@code firstDate}
+         * is selectable, for {@code i} from 0 to {@code dayCount - 1}.
+         */
+        BitSet getSelectableDates(Date firstDate, int dayCount);
+    }
+
     /**
      * Interface to be notified when a cell is clicked and possibly intercept the click.  Return true
      * to intercept the click and prevent any selections from changing.
@@ -1044,17 +705,4 @@ public class CalendarPickerView extends ListView {
     public interface CellClickInterceptor {
         boolean onCellClicked(Date date);
     }
-
-    private class DefaultOnInvalidDateSelectedListener implements OnInvalidDateSelectedListener {
-        @Override
-        public void onInvalidDateSelected(final Date date) {
-            if (ignoreValidatingDates) {
-                return;
-            }
-            final String errMessage =
-                    getResources().getString(R.string.invalid_date, fullDateFormat.format(minCal.getTime()),
-                            fullDateFormat.format(maxCal.getTime()));
-            Toast.makeText(getContext(), errMessage, Toast.LENGTH_SHORT).show();
-        }
-    }
 }
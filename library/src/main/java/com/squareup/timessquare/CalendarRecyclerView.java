@@ -0,0 +1,520 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.squareup.timessquare.CalendarPickerView.CellClickInterceptor;
+import com.squareup.timessquare.CalendarPickerView.DateSelectableFilter;
+import com.squareup.timessquare.CalendarPickerView.FluentInitializer;
+import com.squareup.timessquare.CalendarPickerView.OnDateSelectedListener;
+import com.squareup.timessquare.CalendarPickerView.OnInvalidDateSelectedListener;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link CalendarPickerView} built on a RecyclerView.  It has the same API and behaves the same,
+ * but:
+ * <ul>
+ * <li>each month's id is its {@code year * 12 + month}, so views follow their months across
+ * re-initialization;</li>
+ * <li>months just off screen are laid out ahead of time, so flings don't stall on binding;</li>
+ * <li>a selection or highlight change rebinds the affected months in place, without the item
+ * change animation;</li>
+ * <li>pickers with the same style and locale can share month views through
+ * {@link #setMonthViewPool(MonthViewPool)}.</li>
+ * </ul>
+ */
+public class CalendarRecyclerView extends RecyclerView {
+    /**
+     * How many months that scrolled off screen keep their views bound.
+     */
+    private static final int CACHED_MONTHS = 2;
+
+    final CalendarPickerController controller;
+    private final LinearLayoutManager layoutManager;
+    private final MonthAdapter adapter;
+    private final RangeDragHelper rangeDragHelper;
+    // Where the list was scrolled to when its month views were recycled on detach, if it was.
+    private int detachedFirstPosition = NO_POSITION;
+    private int detachedFirstTop;
+
+    public CalendarRecyclerView(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+
+        controller = new CalendarPickerController(context, attrs, new RecyclerHost());
+        rangeDragHelper = new RangeDragHelper(this, controller, new RangeDragHelper.Callback() {
+            @Override
+            public void onPickerTouchEvent(final MotionEvent event) {
+                CalendarRecyclerView.super.onTouchEvent(event);
+            }
+
+            @Override
+            public void scrollContentBy(final int dy) {
+                CalendarRecyclerView.this.scrollBy(0, dy);
+            }
+        });
+        adapter = new MonthAdapter();
+        layoutManager = new MonthLayoutManager(context);
+        // Hand the month views to the pool when detached, so other pickers can use them.
+        layoutManager.setRecycleChildrenOnDetach(true);
+        setLayoutManager(layoutManager);
+        setRecycledViewPool(controller.getMonthViewPool().getRecycledViewPool());
+        setItemViewCacheSize(CACHED_MONTHS);
+        setBackgroundColor(controller.getBackgroundColor());
+
+        if (isInEditMode()) {
+            final Calendar nextYear = Calendar.getInstance(Locale.getDefault());
+            nextYear.add(Calendar.YEAR, 1);
+
+            init(new Date(), nextYear.getTime()) //
+                    .withSelectedDate(new Date());
+        }
+    }
+
+    /**
+     * See {@link CalendarPickerView#init(Date, Date, Locale)}.
+     */
+    public FluentInitializer init(final Date minDate, final Date maxDate, final Locale locale) {
+        return controller.init(minDate, maxDate, locale);
+    }
+
+    /**
+     * See {@link CalendarPickerView#init(Date, Date)}.
+     */
+    public FluentInitializer init(final Date minDate, final Date maxDate) {
+        return init(minDate, maxDate, Locale.getDefault());
+    }
+
+    /**
+     * See {@link CalendarPickerView#initOpenEnded(Date, Locale)}.
+     */
+    public FluentInitializer initOpenEnded(final Date minDate, final Locale locale) {
+        return controller.initOpenEnded(minDate, locale);
+    }
+
+    public void setDecorators(final List<CalendarCellDecorator> decorators) {
+        controller.setDecorators(decorators);
+    }
+
+    public List<CalendarCellDecorator> getDecorators() {
+        return controller.getDecorators();
+    }
+
+    /**
+     * See {@link CalendarPickerView#setMonthDecorators(List)}.
+     */
+    public void setMonthDecorators(final List<CalendarMonthDecorator> monthDecorators) {
+        controller.setMonthDecorators(monthDecorators);
+    }
+
+    public List<CalendarMonthDecorator> getMonthDecorators() {
+        return controller.getMonthDecorators();
+    }
+
+    /**
+     * See {@link CalendarPickerView#setAsyncMonthDecorator}.
+     */
+    public <T> void setAsyncMonthDecorator(final AsyncCalendarMonthDecorator<T> decorator,
+                                           final Executor executor) {
+        controller.setAsyncMonthDecorator(decorator, executor);
+    }
+
+    /**
+     * See {@link CalendarPickerView#invalidateDecorations(Date, Date)}.
+     */
+    public void invalidateDecorations(final Date fromDate, final Date toDate) {
+        controller.invalidateDecorations(fromDate, toDate);
+    }
+
+    /**
+     * See {@link CalendarPickerView#invalidateDecorations(Collection)}.
+     */
+    public void invalidateDecorations(final Collection<Date> dates) {
+        controller.invalidateDecorations(dates);
+    }
+
+    public boolean scrollToDate(final Date date) {
+        return controller.scrollToDate(date);
+    }
+
+    /**
+     * See {@link CalendarPickerView#fixDialogDimens()}.
+     */
+    public void fixDialogDimens() {
+        Logr.d("Fixing dimensions to h = %d / w = %d", getMeasuredHeight(), getMeasuredWidth());
+        // Fix the layout height/width after the dialog has been shown.
+        getLayoutParams().height = getMeasuredHeight();
+        getLayoutParams().width = getMeasuredWidth();
+        // Post this runnable so it runs _after_ the dimen changes have been applied/re-measured.
+        post(new Runnable() {
+            @Override
+            public void run() {
+                Logr.d("Dimens are fixed: now scroll to the selected date");
+                controller.scrollToSelectedDates();
+            }
+        });
+    }
+
+    /**
+     * See {@link CalendarPickerView#unfixDialogDimens()}.
+     */
+    public void unfixDialogDimens() {
+        Logr.d("Reset the fixed dimensions to allow for re-measurement");
+        getLayoutParams().height = ViewGroup.LayoutParams.MATCH_PARENT;
+        getLayoutParams().width = ViewGroup.LayoutParams.MATCH_PARENT;
+        requestLayout();
+    }
+
+    /**
+     * Set the typeface to be used for month titles.
+     */
+    public void setTitleTypeface(final Typeface titleTypeface) {
+        controller.setTitleTypeface(titleTypeface);
+    }
+
+    /**
+     * Sets the typeface to be used within the date grid.
+     */
+    public void setDateTypeface(final Typeface dateTypeface) {
+        controller.setDateTypeface(dateTypeface);
+    }
+
+    /**
+     * Sets the typeface to be used for all text within this calendar.
+     */
+    public void setTypeface(final Typeface typeface) {
+        setTitleTypeface(typeface);
+        setDateTypeface(typeface);
+    }
+
+    @Override
+    protected void onMeasure(final int widthSpec, final int heightSpec) {
+        if (controller.getMonthCount() == 0) {
+            throw new IllegalStateException(
+                    "Must have at least one month to display.  Did you forget to call init()?");
+        }
+        super.onMeasure(widthSpec, heightSpec);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (detachedFirstPosition != NO_POSITION) {
+            // Without children to anchor on, the layout manager would go back to the first month.
+            layoutManager.scrollToPositionWithOffset(detachedFirstPosition, detachedFirstTop);
+            detachedFirstPosition = NO_POSITION;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        final int firstPosition = layoutManager.findFirstVisibleItemPosition();
+        final View first = layoutManager.findViewByPosition(firstPosition);
+        if (first != null) {
+            detachedFirstPosition = firstPosition;
+            detachedFirstTop = first.getTop() - getPaddingTop();
+        }
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(final MotionEvent event) {
+        return rangeDragHelper.onInterceptTouchEvent(event) || super.onInterceptTouchEvent(event);
+    }
+
+    @Override
+    public boolean onTouchEvent(final MotionEvent event) {
+        return rangeDragHelper.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    /**
+     * Returns the earliest selected date, or null if nothing is selected.  When several dates are
+     * selected, that isn't necessarily the one selected first, as it was before 1.6.6: use
+     * {@link #getSelectedDates()}, which is sorted, to get all of them.
+     */
+    public Date getSelectedDate() {
+        return controller.getSelectedDate();
+    }
+
+    public List<Date> getSelectedDates() {
+        return controller.getSelectedDates();
+    }
+
+    /**
+     * See {@link CalendarPickerView#getSelectedRanges()}.
+     */
+    public List<List<Date>> getSelectedRanges() {
+        return controller.getSelectedRanges();
+    }
+
+    /**
+     * See {@link CalendarPickerView#selectDate(Date)}.
+     */
+    public boolean selectDate(final Date date) {
+        return controller.selectDate(date);
+    }
+
+    /**
+     * See {@link CalendarPickerView#selectDate(Date, boolean)}.
+     */
+    public boolean selectDate(final Date date, final boolean smoothScroll) {
+        return controller.selectDate(date, smoothScroll);
+    }
+
+    public void highlightDate(final Date date) {
+        highlightDates(Collections.singletonList(date));
+    }
+
+    /**
+     * Highlights {@code dates}, in addition to the dates already highlighted.
+     */
+    public void highlightDates(final Collection<Date> dates) {
+        controller.highlightDates(dates);
+    }
+
+    /**
+     * Highlights exactly {@code dates}, un-highlighting all other dates.
+     */
+    public void setHighlightedDates(final Collection<Date> dates) {
+        controller.setHighlightedDates(dates);
+    }
+
+    public void clearHighlightedDates() {
+        controller.clearHighlightedDates();
+    }
+
+    public void setOnDateSelectedListener(final OnDateSelectedListener listener) {
+        controller.setOnDateSelectedListener(listener);
+    }
+
+    /**
+     * See {@link CalendarPickerView#setOnInvalidDateSelectedListener}.
+     */
+    public void setOnInvalidDateSelectedListener(final OnInvalidDateSelectedListener listener) {
+        controller.setOnInvalidDateSelectedListener(listener);
+    }
+
+    /**
+     * See {@link CalendarPickerView#setDateSelectableFilter(DateSelectableFilter)}.
+     */
+    public void setDateSelectableFilter(final DateSelectableFilter listener) {
+        controller.setDateSelectableFilter(listener);
+    }
+
+    /**
+     * See {@link CalendarPickerView#invalidateSelectableDates(Date, Date)}.
+     */
+    public void invalidateSelectableDates(final Date fromDate, final Date toDate) {
+        controller.invalidateSelectableDates(fromDate, toDate);
+    }
+
+    /**
+     * See {@link CalendarPickerView#setCustomDayView(DayViewAdapter)}.
+     */
+    public void setCustomDayView(final DayViewAdapter dayViewAdapter) {
+        controller.setCustomDayView(dayViewAdapter);
+    }
+
+    /**
+     * Draws each month on a single canvas with a {@link MonthCanvasView} instead of a view per day,
+     * which makes months much cheaper to lay out and draw.  Has no effect while a custom
+     * {@link DayViewAdapter} or decorators are set.  Can also be set with the
+     * {@code tsquare_drawMonthsOnCanvas} attribute.
+     */
+    public void setDrawMonthsOnCanvas(final boolean drawMonthsOnCanvas) {
+        controller.setDrawMonthsOnCanvas(drawMonthsOnCanvas);
+    }
+
+    /**
+     * See {@link CalendarPickerView#prepareMonthViews(int)}.
+     */
+    public void prepareMonthViews(final int count) {
+        controller.prepareMonthViews(count);
+    }
+
+    /**
+     * Shares month views with the other {@link CalendarRecyclerView}s using {@code monthViewPool}.
+     * By default, each picker has a pool of its own.
+     */
+    public void setMonthViewPool(final MonthViewPool monthViewPool) {
+        setRecycledViewPool(monthViewPool.getRecycledViewPool());
+        controller.setMonthViewPool(monthViewPool);
+    }
+
+    /**
+     * Set a listener to intercept clicks on calendar cells.
+     */
+    public void setCellClickInterceptor(final CellClickInterceptor listener) {
+        controller.setCellClickInterceptor(listener);
+    }
+
+    /**
+     * Lays out a screen's worth of months beyond the visible ones in the scroll direction, so
+     * they're bound before they scroll into view.
+     */
+    private static class MonthLayoutManager extends LinearLayoutManager {
+        MonthLayoutManager(final Context context) {
+            super(context);
+        }
+
+        @Override
+        protected int getExtraLayoutSpace(final State state) {
+            return getHeight();
+        }
+    }
+
+    /**
+     * Lets the controller work on the months this view has bound: the laid out ones and up to
+     * {@link #CACHED_MONTHS} on either side of them, which can come back without being bound again.
+     */
+    private class RecyclerHost implements CalendarPickerController.Host {
+        @Override
+        public Context getContext() {
+            return CalendarRecyclerView.this.getContext();
+        }
+
+        @Override
+        public int getFirstBoundPosition() {
+            int first = Integer.MAX_VALUE;
+            for (int i = 0; i < getChildCount(); i++) {
+                final int position = getChildAdapterPosition(getChildAt(i));
+                if (position != NO_POSITION) {
+                    first = Math.min(first, position);
+                }
+            }
+            return first == Integer.MAX_VALUE ? 0 : Math.max(0, first - CACHED_MONTHS);
+        }
+
+        @Override
+        public int getBoundCount() {
+            int last = NO_POSITION;
+            for (int i = 0; i < getChildCount(); i++) {
+                last = Math.max(last, getChildAdapterPosition(getChildAt(i)));
+            }
+            if (last == NO_POSITION) {
+                return 0;
+            }
+            last = Math.min(controller.getMonthCount() - 1, last + CACHED_MONTHS);
+            return last - getFirstBoundPosition() + 1;
+        }
+
+        @Override
+        public boolean rebindMonth(final int position, final int changes) {
+            if (getAdapter() == null) {
+                refreshMonths();
+                return false;
+            }
+            // The changes are the payload: the view is updated in place, without an animation.
+            adapter.notifyItemChanged(position, changes);
+            return true;
+        }
+
+        @Override
+        public void refreshMonths() {
+            if (getAdapter() == null) {
+                setAdapter(adapter);
+            }
+            adapter.notifyDataSetChanged();
+        }
+
+        @Override
+        public void scrollToMonth(final int position, final boolean smoothScroll) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    Logr.d("Scrolling to position %d", position);
+
+                    if (smoothScroll) {
+                        smoothScrollToPosition(position);
+                    } else {
+                        layoutManager.scrollToPositionWithOffset(position, 0);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void prepareMonthView() {
+            getRecycledViewPool().putRecycledView(
+                    adapter.createViewHolder(CalendarRecyclerView.this,
+                            controller.getMonthViewType()));
+        }
+
+        @Override
+        public boolean post(final Runnable action) {
+            return CalendarRecyclerView.this.post(action);
+        }
+    }
+
+    private static class MonthViewHolder extends ViewHolder {
+        final View monthView;
+
+        MonthViewHolder(final View monthView) {
+            super(monthView);
+            this.monthView = monthView;
+        }
+    }
+
+    private class MonthAdapter extends Adapter<MonthViewHolder> {
+        MonthAdapter() {
+            setHasStableIds(true);
+        }
+
+        @Override
+        public int getItemCount() {
+            return controller.getMonthCount();
+        }
+
+        @Override
+        public long getItemId(final int position) {
+            return controller.getMonthKey(position);
+        }
+
+        @Override
+        public int getItemViewType(final int position) {
+            return controller.getMonthViewType();
+        }
+
+        @Override
+        public MonthViewHolder onCreateViewHolder(final ViewGroup parent, final int viewType) {
+            return new MonthViewHolder(controller.createMonthView(parent));
+        }
+
+        @Override
+        public void onBindViewHolder(final MonthViewHolder holder, final int position) {
+            controller.bindMonthView(holder.monthView, position);
+        }
+
+        @Override
+        public void onBindViewHolder(final MonthViewHolder holder, final int position,
+                                     final List<Object> payloads) {
+            if (payloads.isEmpty()) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            int changes = 0;
+            for (final Object payload : payloads) {
+                changes |= (Integer) payload;
+            }
+            controller.updateMonthView(holder.monthView, position, changes);
+        }
+
+        @Override
+        public void onViewRecycled(final MonthViewHolder holder) {
+            controller.cancelDecorationLoads(holder.monthView);
+        }
+    }
+}
@@ -5,27 +5,51 @@ import android.content.Context;
 import android.content.res.ColorStateList;
 import android.graphics.Typeface;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 /**
  * TableRow that draws a divider between each cell. To be used with {@link CalendarGridView}.
+ * <p/>
+ * The row handles the touches of its cells itself, rather than each cell having a click listener:
+ * a touch is mapped to the cell under it with the same math the cells are laid out with, and a tap
+ * clicks that cell.  Cells clicked by accessibility services or keys report to the row too, see
+ * {@link CalendarCellView#performClick()}.
  */
-public class CalendarRowView extends ViewGroup implements View.OnClickListener {
+public class CalendarRowView extends ViewGroup {
     private boolean isHeaderRow;
     private MonthView.Listener listener;
+    /**
+     * The cell being touched, only shown pressed once the touch outlasts the tap timeout so cells
+     * don't flash while the list scrolls.
+     */
+    private View touchedCell;
+    private final Runnable showPress = new Runnable() {
+        @Override
+        public void run() {
+            if (touchedCell != null) {
+                touchedCell.setPressed(true);
+            }
+        }
+    };
+    private View releasedCell;
+    private final Runnable hidePress = new Runnable() {
+        @Override
+        public void run() {
+            if (releasedCell != null) {
+                releasedCell.setPressed(false);
+                releasedCell = null;
+            }
+        }
+    };
 
     public CalendarRowView(final Context context, final AttributeSet attrs) {
         super(context, attrs);
     }
 
-    @Override
-    public void addView(final View child, final int index, final ViewGroup.LayoutParams params) {
-        child.setOnClickListener(this);
-        super.addView(child, index, params);
-    }
-
     @Override
     protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
         final long start = System.currentTimeMillis();
@@ -69,11 +93,94 @@ public class CalendarRowView extends ViewGroup implements View.OnClickListener {
         this.isHeaderRow = isHeaderRow;
     }
 
+    /**
+     * Returns the column laid out at {@code x}, relative to the row, like {@link #onLayout}.
+     */
+    int columnAt(final int x) {
+        final int width = getWidth();
+        if (x < 0 || x >= width) {
+            return -1;
+        }
+        // The left edges are rounded down, so x * 7 / width can be one column short.
+        int column = (x * 7) / width;
+        while (column < 6 && x >= ((column + 1) * width) / 7) {
+            column++;
+        }
+        return column;
+    }
+
+    /**
+     * Returns the cell at ({@code x}, {@code y}) if it can be clicked, or null.
+     */
+    View clickableCellAt(final float x, final float y) {
+        if (isHeaderRow || y < 0 || y >= getHeight()) {
+            return null;
+        }
+        final int column = columnAt((int) x);
+        if (column < 0 || column >= getChildCount()) {
+            return null;
+        }
+        final View cell = getChildAt(column);
+        // Cells of display-only months aren't clickable; days outside the month are disabled.
+        return cell.isClickable() && cell.isEnabled() ? cell : null;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(final MotionEvent event) {
+        // The cells never see touches: their taps are dispatched from here.
+        return !isHeaderRow;
+    }
+
     @Override
-    public void onClick(final View v) {
-        // Header rows don't have a click listener
+    public boolean onTouchEvent(final MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                hidePress.run();
+                touchedCell = clickableCellAt(event.getX(), event.getY());
+                if (touchedCell != null) {
+                    postDelayed(showPress, ViewConfiguration.getTapTimeout());
+                }
+                return touchedCell != null;
+            case MotionEvent.ACTION_MOVE:
+                if (touchedCell != null
+                        && clickableCellAt(event.getX(), event.getY()) != touchedCell) {
+                    cancelTouch();
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                final View clicked = touchedCell;
+                if (clicked != null) {
+                    removeCallbacks(showPress);
+                    touchedCell = null;
+                    // Show taps quicker than the tap timeout as pressed too, if only briefly.
+                    clicked.setPressed(true);
+                    releasedCell = clicked;
+                    postDelayed(hidePress, ViewConfiguration.getPressedStateDuration());
+                    clicked.performClick();
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                cancelTouch();
+                return true;
+            default:
+                return touchedCell != null;
+        }
+    }
+
+    private void cancelTouch() {
+        removeCallbacks(showPress);
+        if (touchedCell != null) {
+            touchedCell.setPressed(false);
+            touchedCell = null;
+        }
+    }
+
+    /**
+     * Called by a cell of this row when it's clicked.
+     */
+    void onCellClicked(final View cell) {
         if (listener != null) {
-            listener.handleClick((MonthCellDescriptor) v.getTag());
+            listener.handleClick((MonthCellDescriptor) cell.getTag());
         }
     }
 
@@ -0,0 +1,118 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+
+import java.text.DateFormat;
+import java.util.Locale;
+
+/**
+ * Everything a picker styles its month views with, resolved once from its attributes and
+ * resources.  Month views are styled from it in a single pass, and two views can be bound in each
+ * other's place if their styles are equal.  Immutable.
+ */
+final class CalendarStyle {
+    final int dividerColor;
+    final int titleTextColor;
+    final boolean displayHeader;
+    final int headerTextColor;
+    final Typeface titleTypeface;
+    final Typeface dateTypeface;
+    final Locale locale;
+    final boolean isRtl;
+    final CalendarLabels labels;
+    /**
+     * The weekday headers, in the order they're shown.  Must not be modified.
+     */
+    final String[] weekdays;
+    /**
+     * The colors of the day numbers.  Immutable, so shared by all cells.
+     */
+    final ColorStateList dayTextColors;
+    /**
+     * The state cells' backgrounds are created from, or null for no background.
+     */
+    private final Drawable.ConstantState dayBackground;
+    // What the above were resolved from: styles are equal if these are.
+    private final int dayBackgroundResId;
+    private final int dayTextColorResId;
+    private final DateFormat weekdayNameFormat;
+    private final int firstDayOfWeek;
+
+    CalendarStyle(final Context context, final int dividerColor, final int dayBackgroundResId,
+                  final int dayTextColorResId, final int titleTextColor,
+                  final boolean displayHeader, final int headerTextColor,
+                  final Typeface titleTypeface, final Typeface dateTypeface, final Locale locale,
+                  final DateFormat weekdayNameFormat, final int firstDayOfWeek) {
+        final Resources res = context.getResources();
+        this.dividerColor = dividerColor;
+        this.dayBackgroundResId = dayBackgroundResId;
+        this.dayTextColorResId = dayTextColorResId;
+        this.titleTextColor = titleTextColor;
+        this.displayHeader = displayHeader;
+        this.headerTextColor = headerTextColor;
+        this.titleTypeface = titleTypeface;
+        this.dateTypeface = dateTypeface;
+        this.locale = locale;
+        this.weekdayNameFormat = weekdayNameFormat;
+        this.firstDayOfWeek = firstDayOfWeek;
+        isRtl = MonthView.isRtl(locale);
+        labels = CalendarLabels.forLocale(locale);
+        weekdays = labels.weekdays(weekdayNameFormat, firstDayOfWeek, isRtl);
+        dayTextColors = res.getColorStateList(dayTextColorResId);
+        dayBackground = dayBackgroundResId == 0 ? null
+                : res.getDrawable(dayBackgroundResId).getConstantState();
+    }
+
+    /**
+     * Returns a new cell background drawable, or null if cells have none.  Each cell needs its
+     * own, as its state changes with the cell's, but they all share their constant state.
+     */
+    Drawable newDayBackground(final Resources res) {
+        return dayBackground == null ? null : dayBackground.newDrawable(res);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CalendarStyle)) {
+            return false;
+        }
+        final CalendarStyle style = (CalendarStyle) o;
+        return dividerColor == style.dividerColor
+                && dayBackgroundResId == style.dayBackgroundResId
+                && dayTextColorResId == style.dayTextColorResId
+                && titleTextColor == style.titleTextColor
+                && displayHeader == style.displayHeader
+                && headerTextColor == style.headerTextColor
+                && firstDayOfWeek == style.firstDayOfWeek
+                && locale.equals(style.locale)
+                && weekdayNameFormat.equals(style.weekdayNameFormat)
+                && (titleTypeface == null ? style.titleTypeface == null
+                : titleTypeface.equals(style.titleTypeface))
+                && (dateTypeface == null ? style.dateTypeface == null
+                : dateTypeface.equals(style.dateTypeface));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = dividerColor;
+        result = 31 * result + dayBackgroundResId;
+        result = 31 * result + dayTextColorResId;
+        result = 31 * result + titleTextColor;
+        result = 31 * result + (displayHeader ? 1 : 0);
+        result = 31 * result + headerTextColor;
+        result = 31 * result + firstDayOfWeek;
+        result = 31 * result + locale.hashCode();
+        result = 31 * result + weekdayNameFormat.hashCode();
+        result = 31 * result + (titleTypeface != null ? titleTypeface.hashCode() : 0);
+        result = 31 * result + (dateTypeface != null ? dateTypeface.hashCode() : 0);
+        return result;
+    }
+}
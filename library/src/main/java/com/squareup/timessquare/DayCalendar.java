@@ -0,0 +1,188 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Calendar math on "epoch days": a day is an int counting the days since 1970-01-01 in the
+ * calendar's time zone.  Months are identified by a "month key" of {@code year * 12 + month}, with
+ * {@code month} being 0-based like {@link Calendar#MONTH}.
+ * <p/>
+ * Unlike {@link Calendar}, none of this allocates, so it is what the picker uses while building
+ * grids, handling clicks and scrolling.  Only the proleptic Gregorian calendar is supported.
+ */
+final class DayCalendar {
+    /**
+     * Stands for "no day" where a day is optional.
+     */
+    static final int NO_DAY = Integer.MIN_VALUE;
+    static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final int DAYS_PER_ERA = 146097;
+    private static final int DAYS_FROM_YEAR_ZERO = 719468;
+
+    private final TimeZone timeZone;
+    private final int firstDayOfWeek;
+
+    DayCalendar(final Locale locale) {
+        this(TimeZone.getDefault(), Calendar.getInstance(locale).getFirstDayOfWeek());
+    }
+
+    DayCalendar(final TimeZone timeZone, final int firstDayOfWeek) {
+        this.timeZone = timeZone;
+        this.firstDayOfWeek = firstDayOfWeek;
+    }
+
+    /**
+     * The first day of the week, as one of {@link Calendar#SUNDAY} to {@link Calendar#SATURDAY}.
+     */
+    int getFirstDayOfWeek() {
+        return firstDayOfWeek;
+    }
+
+    /**
+     * Returns the day containing {@code date}.  Time of day is ignored.
+     */
+    int toDay(final Date date) {
+        return toDay(date.getTime());
+    }
+
+    /**
+     * Returns the day containing the instant {@code millis}.
+     */
+    int toDay(final long millis) {
+        return (int) floorDiv(millis + timeZone.getOffset(millis), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns midnight at the start of {@code day}, or the first valid instant of that day if the
+     * clocks skip midnight.
+     */
+    Date toDate(final int day) {
+        return new Date(toMillis(day));
+    }
+
+    long toMillis(final int day) {
+        final long local = day * MILLIS_PER_DAY;
+        // Try the offsets in effect on either side of the day: a candidate is right if its offset
+        // is the one it was computed with.  If neither is (midnight is skipped), the later one is
+        // the first instant after the gap.
+        final int before = timeZone.getOffset(local - MILLIS_PER_DAY);
+        final int after = timeZone.getOffset(local + MILLIS_PER_DAY);
+        final long early = local - Math.max(before, after);
+        final long late = local - Math.min(before, after);
+        if (timeZone.getOffset(early) == Math.max(before, after)) {
+            return early;
+        }
+        return late;
+    }
+
+    /**
+     * Returns the day of {@code year}, {@code month} (0-based) and {@code dayOfMonth} (1-based).
+     */
+    static int toDay(final int year, final int month, final int dayOfMonth) {
+        final int m = month + 1;
+        final int y = m <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + dayOfMonth - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_FROM_YEAR_ZERO;
+    }
+
+    /**
+     * Returns the month key ({@code year * 12 + month}) of the month containing {@code day}.
+     */
+    static int monthKey(final int day) {
+        final int z = day + DAYS_FROM_YEAR_ZERO;
+        final int era = (z >= 0 ? z : z - DAYS_PER_ERA + 1) / DAYS_PER_ERA;
+        final int dayOfEra = z - era * DAYS_PER_ERA;
+        final int yearOfEra =
+                (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int mp = (5 * dayOfYear + 2) / 153;
+        final int month = mp < 10 ? mp + 2 : mp - 10;
+        final int year = yearOfEra + era * 400 + (month <= 1 ? 1 : 0);
+        return monthKey(year, month);
+    }
+
+    static int monthKey(final int year, final int month) {
+        return year * 12 + month;
+    }
+
+    static int year(final int monthKey) {
+        return floorDiv(monthKey, 12);
+    }
+
+    static int month(final int monthKey) {
+        return monthKey - year(monthKey) * 12;
+    }
+
+    /**
+     * Returns the first day of the month identified by {@code monthKey}.
+     */
+    static int monthStart(final int monthKey) {
+        return toDay(year(monthKey), month(monthKey), 1);
+    }
+
+    static int daysInMonth(final int monthKey) {
+        return monthStart(monthKey + 1) - monthStart(monthKey);
+    }
+
+    /**
+     * Returns the 1-based day of the month of {@code day}.
+     */
+    static int dayOfMonth(final int day) {
+        return day - monthStart(monthKey(day)) + 1;
+    }
+
+    /**
+     * Returns the day of the week of {@code day}, as one of {@link Calendar#SUNDAY} to
+     * {@link Calendar#SATURDAY}.
+     */
+    static int dayOfWeek(final int day) {
+        // 1970-01-01 was a Thursday.
+        return floorMod(day + Calendar.THURSDAY - 1, 7) + 1;
+    }
+
+    /**
+     * Returns the column (0 to 6) {@code day} falls into in a week starting on the
+     * {@link #getFirstDayOfWeek() first day of the week}.
+     */
+    int weekColumn(final int day) {
+        return floorMod(dayOfWeek(day) - firstDayOfWeek, 7);
+    }
+
+    /**
+     * Returns the first day shown in the grid of the month identified by {@code monthKey}: the
+     * start of the week containing the first of the month.
+     */
+    int gridStart(final int monthKey) {
+        final int monthStart = monthStart(monthKey);
+        return monthStart - weekColumn(monthStart);
+    }
+
+    /**
+     * Returns the number of weeks (rows) the grid of the month identified by {@code monthKey}
+     * needs.
+     */
+    int weeksInGrid(final int monthKey) {
+        final int monthStart = monthStart(monthKey);
+        return (weekColumn(monthStart) + daysInMonth(monthKey) + 6) / 7;
+    }
+
+    private static long floorDiv(final long x, final long y) {
+        final long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    private static int floorDiv(final int x, final int y) {
+        return (int) floorDiv((long) x, (long) y);
+    }
+
+    private static int floorMod(final int x, final int y) {
+        return x - floorDiv(x, y) * y;
+    }
+}
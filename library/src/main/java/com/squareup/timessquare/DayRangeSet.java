@@ -0,0 +1,142 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.Arrays;
+
+/**
+ * A set of days (see {@link DayCalendar}) stored as ranges, sorted and merged: ranges never
+ * overlap or touch, so adding a range swallows its neighbours and removing days splits the range
+ * they're in.  Looking a day up is a binary search over the ranges, and the ranges are kept in two
+ * arrays of ends rather than objects.
+ */
+final class DayRangeSet {
+    private int[] starts = new int[4];
+    private int[] ends = new int[4];
+    private int size;
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of ranges.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the first day of the range at {@code index}.
+     */
+    int start(final int index) {
+        return starts[index];
+    }
+
+    /**
+     * Returns the last day of the range at {@code index}.
+     */
+    int end(final int index) {
+        return ends[index];
+    }
+
+    boolean contains(final int day) {
+        return indexOf(day) >= 0;
+    }
+
+    /**
+     * Returns the index of the range containing {@code day}, or -1 if there is none.
+     */
+    int indexOf(final int day) {
+        final int index = floor(day);
+        return index >= 0 && ends[index] >= day ? index : -1;
+    }
+
+    /**
+     * Returns the index of the first range that ends on or after {@code day}, or {@link #size()}
+     * if there is none.
+     */
+    int ceiling(final int day) {
+        final int index = floor(day);
+        return index >= 0 && ends[index] >= day ? index : index + 1;
+    }
+
+    /**
+     * Adds the days from {@code from} to {@code to}, inclusive, merging the ranges they overlap or
+     * touch.  Returns the index of the range they end up in.
+     */
+    int add(final int from, final int to) {
+        // Ranges ending the day before from or later, up to the last starting the day after to.
+        final int first = ceiling(from - 1);
+        final int last = floor(to + 1);
+        final int start = first <= last ? Math.min(from, starts[first]) : from;
+        final int end = first <= last ? Math.max(to, ends[last]) : to;
+        splice(first, last - first + 1, 1);
+        starts[first] = start;
+        ends[first] = end;
+        return first;
+    }
+
+    /**
+     * Removes the days from {@code from} to {@code to}, inclusive, splitting the ranges they cut.
+     */
+    void remove(final int from, final int to) {
+        final int first = ceiling(from);
+        final int last = floor(to);
+        if (first > last) {
+            return;
+        }
+        final int firstStart = starts[first];
+        final int lastEnd = ends[last];
+        final boolean keepLeft = firstStart < from;
+        final boolean keepRight = lastEnd > to;
+        splice(first, last - first + 1, (keepLeft ? 1 : 0) + (keepRight ? 1 : 0));
+        int index = first;
+        if (keepLeft) {
+            starts[index] = firstStart;
+            ends[index] = from - 1;
+            index++;
+        }
+        if (keepRight) {
+            starts[index] = to + 1;
+            ends[index] = lastEnd;
+        }
+    }
+
+    /**
+     * Returns the index of the last range starting on or before {@code day}, or -1 if there is
+     * none.
+     */
+    private int floor(final int day) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] <= day) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Replaces the {@code removed} ranges from {@code index} with room for {@code added} ranges.
+     */
+    private void splice(final int index, final int removed, final int added) {
+        final int newSize = size - removed + added;
+        if (newSize > starts.length) {
+            final int capacity = Math.max(newSize, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        final int moved = size - index - removed;
+        System.arraycopy(starts, index + removed, starts, index + added, moved);
+        System.arraycopy(ends, index + removed, ends, index + added, moved);
+        size = newSize;
+    }
+}
@@ -0,0 +1,135 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.BitSet;
+
+import static com.squareup.timessquare.DayCalendar.NO_DAY;
+
+/**
+ * A set of days (see {@link DayCalendar}) stored as a bitset, one bit per day from a base day
+ * onwards.  Adding, removing and looking up a day are constant time, and days are iterated in
+ * order.  Days before the base day can't be stored.
+ * <p/>
+ * The earliest and latest days are kept up to date as days come and go, so asking for them is
+ * constant time too.
+ */
+final class DaySet {
+    private final BitSet bits = new BitSet();
+    private int baseDay;
+    private int size;
+    private int first = NO_DAY;
+    private int last = NO_DAY;
+
+    /**
+     * Removes all days and makes {@code baseDay} the earliest day that can be stored.
+     */
+    void reset(final int baseDay) {
+        clear();
+        this.baseDay = baseDay;
+    }
+
+    void clear() {
+        bits.clear();
+        size = 0;
+        first = NO_DAY;
+        last = NO_DAY;
+    }
+
+    /**
+     * Adds {@code day}, returning false if it was already present or is before the base day.
+     */
+    boolean add(final int day) {
+        if (day < baseDay || contains(day)) {
+            return false;
+        }
+        bits.set(day - baseDay);
+        if (size == 0 || day < first) {
+            first = day;
+        }
+        if (size == 0 || day > last) {
+            last = day;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes {@code day}, returning false if it wasn't present.
+     */
+    boolean remove(final int day) {
+        if (!contains(day)) {
+            return false;
+        }
+        bits.clear(day - baseDay);
+        size--;
+        if (size == 0) {
+            first = NO_DAY;
+            last = NO_DAY;
+        } else if (day == first) {
+            first = next(day + 1);
+        } else if (day == last) {
+            last = baseDay + bits.length() - 1;
+        }
+        return true;
+    }
+
+    /**
+     * Makes this set a copy of {@code other}.
+     */
+    void copyFrom(final DaySet other) {
+        bits.clear();
+        bits.or(other.bits);
+        baseDay = other.baseDay;
+        size = other.size;
+        first = other.first;
+        last = other.last;
+    }
+
+    boolean contains(final int day) {
+        return day >= baseDay && bits.get(day - baseDay);
+    }
+
+    /**
+     * Returns true if this set and {@code other} hold the same days from {@code from} (inclusive)
+     * to {@code to} (exclusive).
+     */
+    boolean sameDays(final DaySet other, final int from, final int to) {
+        for (int day = from; day < to; day++) {
+            if (contains(day) != other.contains(day)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the earliest day, or {@link DayCalendar#NO_DAY} if the set is empty.
+     */
+    int first() {
+        return first;
+    }
+
+    /**
+     * Returns the latest day, or {@link DayCalendar#NO_DAY} if the set is empty.
+     */
+    int last() {
+        return last;
+    }
+
+    /**
+     * Returns the earliest day on or after {@code day}, or {@link DayCalendar#NO_DAY} if there is
+     * none.
+     */
+    int next(final int day) {
+        final int index = bits.nextSetBit(Math.max(day - baseDay, 0));
+        return index < 0 ? NO_DAY : baseDay + index;
+    }
+}
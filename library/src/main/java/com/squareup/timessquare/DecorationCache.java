@@ -0,0 +1,147 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import java.util.Arrays;
+
+import static com.squareup.timessquare.DayCalendar.NO_DAY;
+
+/**
+ * Remembers which cells already show the decorations of their day, so binding a month only runs
+ * the decorators on the days they haven't decorated yet or whose decorations were invalidated.
+ * <p/>
+ * Each invalidation bumps a version.  A cell is stamped with its day and the version it was
+ * decorated at, and is up to date as long as neither its day nor all days were invalidated since.
+ * Invalidated days are kept as ranges, each with the version it was last invalidated at, so
+ * invalidating many days costs no more than invalidating one.  Must only be used on the UI thread.
+ */
+final class DecorationCache {
+    private int version;
+    /**
+     * The version all days were last invalidated at.
+     */
+    private int allInvalidatedVersion;
+    // The ranges of days invalidated since allInvalidatedVersion: sorted, never overlapping, and
+    // each with the version it was last invalidated at.
+    private int[] starts = new int[4];
+    private int[] ends = new int[4];
+    private int[] versions = new int[4];
+    private int size;
+
+    /**
+     * Returns true if {@code cellView} shows the up-to-date decorations of {@code day}.
+     */
+    boolean isDecorated(final CalendarCellView cellView, final int day) {
+        return isStamped(cellView, day, cellView.decorationVersion)
+                && cellView.decorationVersion >= allInvalidatedVersion
+                && cellView.decorationVersion >= invalidatedVersion(day);
+    }
+
+    /**
+     * Returns true if {@code cellView} was last decorated by this cache for {@code day} at
+     * {@code version}: neither re-decorated nor bound to another day since.
+     */
+    boolean isStamped(final CalendarCellView cellView, final int day, final int version) {
+        return cellView.decorationCache == this
+                && cellView.decoratedDay == day
+                && cellView.decorationVersion == version;
+    }
+
+    /**
+     * Stamps {@code cellView} as showing the current decorations of {@code day}.
+     */
+    void markDecorated(final CalendarCellView cellView, final int day) {
+        cellView.decorationCache = this;
+        cellView.decoratedDay = day;
+        cellView.decorationVersion = version;
+    }
+
+    /**
+     * Forgets what {@code cellView} was decorated with, so it's decorated again when next bound.
+     */
+    static void forget(final CalendarCellView cellView) {
+        cellView.decorationCache = null;
+        cellView.decoratedDay = NO_DAY;
+    }
+
+    /**
+     * Invalidates the decorations of the days from {@code fromDay} to {@code toDay}, inclusive.
+     */
+    void invalidate(final int fromDay, final int toDay) {
+        version++;
+        // The ranges from the first ending on or after fromDay to the last starting by toDay.
+        final int floor = floor(fromDay);
+        final int first = floor >= 0 && ends[floor] >= fromDay ? floor : floor + 1;
+        final int last = floor(toDay);
+        // The parts of those ranges outside fromDay..toDay keep their own version.
+        final boolean keepLeft = first <= last && starts[first] < fromDay;
+        final boolean keepRight = first <= last && ends[last] > toDay;
+        final int leftStart = keepLeft ? starts[first] : 0;
+        final int leftVersion = keepLeft ? versions[first] : 0;
+        final int rightEnd = keepRight ? ends[last] : 0;
+        final int rightVersion = keepRight ? versions[last] : 0;
+        splice(first, last - first + 1, 1 + (keepLeft ? 1 : 0) + (keepRight ? 1 : 0));
+        int index = first;
+        if (keepLeft) {
+            set(index++, leftStart, fromDay - 1, leftVersion);
+        }
+        set(index++, fromDay, toDay, version);
+        if (keepRight) {
+            set(index, toDay + 1, rightEnd, rightVersion);
+        }
+    }
+
+    void invalidateAll() {
+        allInvalidatedVersion = ++version;
+        size = 0;
+    }
+
+    /**
+     * Returns the version {@code day} was last invalidated at on its own, or 0.
+     */
+    private int invalidatedVersion(final int day) {
+        final int index = floor(day);
+        return index >= 0 && ends[index] >= day ? versions[index] : 0;
+    }
+
+    /**
+     * Returns the index of the last range starting on or before {@code day}, or -1 if there is
+     * none.
+     */
+    private int floor(final int day) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] <= day) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private void set(final int index, final int start, final int end, final int rangeVersion) {
+        starts[index] = start;
+        ends[index] = end;
+        versions[index] = rangeVersion;
+    }
+
+    /**
+     * Replaces the {@code removed} ranges from {@code index} with room for {@code added} ranges.
+     */
+    private void splice(final int index, final int removed, final int added) {
+        final int newSize = size - removed + added;
+        if (newSize > starts.length) {
+            final int capacity = Math.max(newSize, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        final int moved = size - index - removed;
+        System.arraycopy(starts, index + removed, starts, index + added, moved);
+        System.arraycopy(ends, index + removed, ends, index + added, moved);
+        System.arraycopy(versions, index + removed, versions, index + added, moved);
+        size = newSize;
+    }
+}
@@ -0,0 +1,446 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.text.DateFormat;
+import java.util.List;
+
+/**
+ * Draws a month the way {@link MonthView} lays it out (title, weekday header, a grid of days and
+ * the dividers between them) on a single canvas, without a child view per day.  The day background
+ * drawable and text colors are the same selectors {@link CalendarCellView} uses, set to the state
+ * each day would have had.  Taps are mapped to days by their coordinates, and each day is exposed
+ * to accessibility services as a virtual view.
+ * <p/>
+ * It can't host a custom {@link DayViewAdapter} or {@link CalendarCellDecorator}s, which is why
+ * the pickers only use it when asked to.
+ */
+public class MonthCanvasView extends View {
+    /**
+     * See {@link CalendarGridView}.
+     */
+    private static final float FLOAT_FUDGE = 0.5f;
+
+    // Drawn on top of the CalendarCellView states.
+    private static final int STATE_SELECTED = 1 << CalendarCellView.STATE_COUNT;
+    private static final int STATE_PRESSED = STATE_SELECTED << 1;
+    /**
+     * Drawable state sets by combination of the flags above, created as they're first needed.  A
+     * drawable keeps the array it's given, so each combination needs an array of its own.
+     */
+    private static final int[][] DRAWABLE_STATES = new int[STATE_PRESSED << 1][];
+
+    private final Paint titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint headerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint dividerPaint = new Paint();
+    private final int titleTopMargin;
+    private final int titleBottomMargin;
+    private final int headerBottomPadding;
+    private Drawable dayBackground;
+    private ColorStateList dayTextColors;
+    private boolean displayHeader;
+    private boolean isRtl;
+    private CalendarLabels labels;
+    private String[] weekdayLabels;
+    private MonthView.Listener listener;
+    private final DayAccessibilityHelper accessibilityHelper;
+    /**
+     * Formats the dates accessibility services read out.
+     */
+    private DateFormat dayDescriptionFormat;
+
+    private String title;
+    private List<List<MonthCellDescriptor>> cells;
+    /**
+     * Day numbers of the cells, in the order they're drawn.
+     */
+    private final String[] dayLabels = new String[6 * 7];
+    private boolean displayOnly;
+    private int cellSize;
+    private int gridWidth;
+    private int headerTop;
+    private int gridTop;
+    private MonthCellDescriptor pressedCell;
+
+    /**
+     * Creates a view styled like {@link MonthView#create}.
+     */
+    static MonthCanvasView create(final Context context, final CalendarStyle style,
+                                  final MonthView.Listener listener) {
+        final MonthCanvasView view = new MonthCanvasView(context, null);
+        view.dividerPaint.setColor(style.dividerColor);
+        view.dayBackground = style.newDayBackground(context.getResources());
+        view.dayTextColors = style.dayTextColors;
+        view.titlePaint.setColor(style.titleTextColor);
+        view.displayHeader = style.displayHeader;
+        view.headerPaint.setColor(style.headerTextColor);
+        if (style.titleTypeface != null) {
+            view.titlePaint.setTypeface(style.titleTypeface);
+        }
+        if (style.dateTypeface != null) {
+            view.headerPaint.setTypeface(style.dateTypeface);
+            view.dayPaint.setTypeface(style.dateTypeface);
+        }
+        view.isRtl = style.isRtl;
+        view.labels = style.labels;
+        view.weekdayLabels = style.weekdays;
+        view.dayDescriptionFormat = DateFormat.getDateInstance(DateFormat.FULL, style.locale);
+        view.listener = listener;
+        return view;
+    }
+
+    public MonthCanvasView(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+        final Resources res = context.getResources();
+        titleTopMargin = res.getDimensionPixelSize(R.dimen.calendar_month_topmargin);
+        titleBottomMargin = res.getDimensionPixelSize(R.dimen.calendar_month_title_bottommargin);
+        headerBottomPadding = res.getDimensionPixelSize(R.dimen.calendar_day_headers_paddingbottom);
+        titlePaint.setTextSize(res.getDimension(R.dimen.calendar_header_dbo));
+        titlePaint.setTypeface(Typeface.DEFAULT_BOLD);
+        titlePaint.setTextAlign(Paint.Align.CENTER);
+        headerPaint.setTextSize(res.getDimension(R.dimen.calendar_text_small));
+        headerPaint.setTextAlign(Paint.Align.CENTER);
+        dayPaint.setTextSize(res.getDimension(R.dimen.calendar_text_dbo));
+        dayPaint.setTextAlign(Paint.Align.CENTER);
+        dividerPaint.setColor(res.getColor(R.color.calendar_divider));
+        accessibilityHelper = new DayAccessibilityHelper();
+        ViewCompat.setAccessibilityDelegate(this, accessibilityHelper);
+    }
+
+    public void setListener(final MonthView.Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Same as {@link MonthView#init}.
+     */
+    public void init(final MonthDescriptor month, final List<List<MonthCellDescriptor>> cells,
+                     final boolean displayOnly, final Typeface titleTypeface,
+                     final Typeface dateTypeface) {
+        final boolean rowsChanged = this.cells == null || this.cells.size() != cells.size();
+        title = month.getLabel();
+        this.cells = cells;
+        this.displayOnly = displayOnly;
+        pressedCell = null;
+        for (int row = 0; row < cells.size(); row++) {
+            for (int c = 0; c < 7; c++) {
+                dayLabels[row * 7 + c] = labels.dayOfMonth(cellAt(row, c).getValue());
+            }
+        }
+        if (titleTypeface != null) {
+            titlePaint.setTypeface(titleTypeface);
+        }
+        if (dateTypeface != null) {
+            headerPaint.setTypeface(dateTypeface);
+            dayPaint.setTypeface(dateTypeface);
+        }
+        if (rowsChanged) {
+            requestLayout();
+        }
+        invalidate();
+        accessibilityHelper.invalidateRoot();
+    }
+
+    /**
+     * Same as {@link MonthView#update}: draws the new state of the cells.
+     */
+    void update(final List<List<MonthCellDescriptor>> cells) {
+        this.cells = cells;
+        invalidate();
+        accessibilityHelper.invalidateRoot();
+    }
+
+    /**
+     * Returns the cell drawn in {@code column} of {@code row}.
+     */
+    private MonthCellDescriptor cellAt(final int row, final int column) {
+        return cells.get(row).get(isRtl ? 6 - column : column);
+    }
+
+    @Override
+    protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
+        final int width = MeasureSpec.getSize(widthMeasureSpec);
+        cellSize = width / 7;
+        // Like CalendarGridView: remove the pixels /7 leaves over and add two for the borders.
+        gridWidth = cellSize * 7 + 2;
+        headerTop = titleTopMargin + lineHeight(titlePaint) + titleBottomMargin;
+        gridTop = headerTop;
+        if (displayHeader) {
+            gridTop += Math.min(lineHeight(headerPaint), cellSize) + headerBottomPadding;
+        }
+        final int rows = cells == null ? 0 : cells.size();
+        setMeasuredDimension(width, gridTop + rows * cellSize);
+    }
+
+    private static int lineHeight(final Paint paint) {
+        final Paint.FontMetrics metrics = paint.getFontMetrics();
+        return (int) Math.ceil(metrics.bottom - metrics.top);
+    }
+
+    /**
+     * Returns the y coordinate to draw {@code paint}'s text at to center it between {@code top} and
+     * {@code bottom}.
+     */
+    private static float baseline(final Paint paint, final int top, final int bottom) {
+        return (top + bottom) / 2f - (paint.descent() + paint.ascent()) / 2f;
+    }
+
+    private int columnLeft(final int column) {
+        return (column * gridWidth) / 7;
+    }
+
+    @Override
+    protected void onDraw(final Canvas canvas) {
+        if (cells == null) {
+            return;
+        }
+        canvas.drawText(title, getWidth() / 2f, baseline(titlePaint, titleTopMargin,
+                headerTop - titleBottomMargin), titlePaint);
+
+        final int numRows = cells.size();
+        final int bottom = gridTop + numRows * cellSize;
+        if (displayHeader) {
+            final float y = baseline(headerPaint, headerTop, gridTop - headerBottomPadding);
+            for (int c = 0; c < 7; c++) {
+                final float x = (columnLeft(c) + columnLeft(c + 1)) / 2f;
+                canvas.drawText(weekdayLabels[c], x, y, headerPaint);
+            }
+            canvas.drawLine(0, gridTop - 1, gridWidth - 2, gridTop - 1, dividerPaint);
+        }
+
+        for (int row = 0; row < numRows; row++) {
+            final int top = gridTop + row * cellSize;
+            final float y = baseline(dayPaint, top, top + cellSize);
+            for (int c = 0; c < 7; c++) {
+                final MonthCellDescriptor cell = cellAt(row, c);
+                final int[] state = drawableState(cell, cell == pressedCell);
+                final int left = columnLeft(c);
+                final int right = columnLeft(c + 1);
+                if (dayBackground != null) {
+                    dayBackground.setState(state);
+                    dayBackground.setBounds(left, top, right, top + cellSize);
+                    dayBackground.draw(canvas);
+                }
+                dayPaint.setColor(dayTextColors.getColorForState(state,
+                        dayTextColors.getDefaultColor()));
+                canvas.drawText(dayLabels[row * 7 + c], (left + right) / 2f, y, dayPaint);
+            }
+            final int rowBottom = top + cellSize - 1;
+            canvas.drawLine(0, rowBottom, gridWidth - 2, rowBottom, dividerPaint);
+        }
+
+        // Left side border and each cell's right-side border.
+        canvas.drawLine(FLOAT_FUDGE, gridTop, FLOAT_FUDGE, bottom, dividerPaint);
+        for (int c = 0; c < 7; c++) {
+            final float x = columnLeft(c + 1) - FLOAT_FUDGE;
+            canvas.drawLine(x, gridTop, x, bottom, dividerPaint);
+        }
+    }
+
+    /**
+     * Returns the drawable state a {@link CalendarCellView} showing {@code cell} would have.
+     */
+    private static int[] drawableState(final MonthCellDescriptor cell, final boolean pressed) {
+        int flags = CalendarCellView.cellState(cell);
+        if (cell.isSelected()) {
+            flags |= STATE_SELECTED;
+        }
+        if (pressed) {
+            flags |= STATE_PRESSED;
+        }
+
+        int[] state = DRAWABLE_STATES[flags];
+        if (state == null) {
+            final int[] cellState = CalendarCellView.drawableState(flags & (STATE_SELECTED - 1));
+            // Cells outside the current month are disabled, so it also brings state_enabled.
+            final boolean enabled = (flags & CalendarCellView.STATE_CURRENT_MONTH) != 0;
+            state = new int[cellState.length + Integer.bitCount(flags & ~(STATE_SELECTED - 1))
+                    + (enabled ? 1 : 0)];
+            System.arraycopy(cellState, 0, state, 0, cellState.length);
+            int i = cellState.length;
+            if (enabled) {
+                state[i++] = android.R.attr.state_enabled;
+            }
+            if ((flags & STATE_SELECTED) != 0) {
+                state[i++] = android.R.attr.state_selected;
+            }
+            if ((flags & STATE_PRESSED) != 0) {
+                state[i] = android.R.attr.state_pressed;
+            }
+            DRAWABLE_STATES[flags] = state;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the index, {@code row * 7 + column}, of the cell drawn at ({@code x}, {@code y}), or
+     * -1 if there is none.
+     */
+    private int cellIndexAt(final float x, final float y) {
+        // Until it's measured with a width of 7 pixels or more, the view has no cells to hit.
+        if (cells == null || cellSize <= 0 || y < gridTop || x < 0 || x >= columnLeft(7)) {
+            return -1;
+        }
+        final int row = ((int) y - gridTop) / cellSize;
+        if (row >= cells.size()) {
+            return -1;
+        }
+        int column = 0;
+        while (x >= columnLeft(column + 1)) {
+            column++;
+        }
+        return row * 7 + column;
+    }
+
+    /**
+     * Returns the cell at ({@code x}, {@code y}) if it can be clicked, or null.
+     */
+    MonthCellDescriptor clickableCellAt(final float x, final float y) {
+        final int index = cellIndexAt(x, y);
+        if (index < 0) {
+            return null;
+        }
+        final MonthCellDescriptor cell = cellAt(index / 7, index % 7);
+        return isClickable(cell) ? cell : null;
+    }
+
+    private boolean isClickable(final MonthCellDescriptor cell) {
+        // Like a disabled CalendarCellView, days outside the month ignore taps.
+        return !displayOnly && cell.isCurrentMonth();
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(final MotionEvent event) {
+        return accessibilityHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean onTouchEvent(final MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                pressedCell = clickableCellAt(event.getX(), event.getY());
+                invalidate();
+                return pressedCell != null;
+            case MotionEvent.ACTION_MOVE:
+                if (pressedCell != null
+                        && clickableCellAt(event.getX(), event.getY()) != pressedCell) {
+                    pressedCell = null;
+                    invalidate();
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                final MonthCellDescriptor clicked = pressedCell;
+                pressedCell = null;
+                invalidate();
+                if (clicked != null && listener != null) {
+                    listener.handleClick(clicked);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                pressedCell = null;
+                invalidate();
+                return true;
+            default:
+                return pressedCell != null;
+        }
+    }
+
+    /**
+     * Exposes each cell of the grid as a virtual view, with the id {@code row * 7 + column}, and
+     * routes the clicks of accessibility services to the listener like taps.
+     */
+    private class DayAccessibilityHelper extends ExploreByTouchHelper {
+        private final Rect bounds = new Rect();
+
+        DayAccessibilityHelper() {
+            super(MonthCanvasView.this);
+        }
+
+        private boolean isCell(final int virtualViewId) {
+            return cells != null && virtualViewId >= 0 && virtualViewId < cells.size() * 7;
+        }
+
+        private MonthCellDescriptor cell(final int virtualViewId) {
+            return cellAt(virtualViewId / 7, virtualViewId % 7);
+        }
+
+        @Override
+        protected int getVirtualViewAt(final float x, final float y) {
+            final int index = cellIndexAt(x, y);
+            return index >= 0 ? index : INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(final List<Integer> virtualViewIds) {
+            if (cells == null) {
+                return;
+            }
+            for (int i = 0; i < cells.size() * 7; i++) {
+                virtualViewIds.add(i);
+            }
+        }
+
+        @Override
+        protected void onPopulateEventForVirtualView(final int virtualViewId,
+                                                     final AccessibilityEvent event) {
+            // The cells may have changed since the event was asked for.
+            event.setContentDescription(isCell(virtualViewId)
+                    ? dayDescriptionFormat.format(cell(virtualViewId).getDate()) : "");
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(final int virtualViewId,
+                                                    final AccessibilityNodeInfoCompat node) {
+            if (!isCell(virtualViewId)) {
+                node.setContentDescription("");
+                bounds.set(0, 0, 0, 0);
+                node.setBoundsInParent(bounds);
+                return;
+            }
+            final MonthCellDescriptor cell = cell(virtualViewId);
+            final int column = virtualViewId % 7;
+            final int top = gridTop + (virtualViewId / 7) * cellSize;
+            bounds.set(columnLeft(column), top, columnLeft(column + 1), top + cellSize);
+            node.setBoundsInParent(bounds);
+            node.setContentDescription(dayDescriptionFormat.format(cell.getDate()));
+            node.setEnabled(cell.isCurrentMonth());
+            node.setSelected(cell.isSelected());
+            if (isClickable(cell)) {
+                node.setClickable(true);
+                node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            }
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(final int virtualViewId, final int action,
+                                                        final Bundle arguments) {
+            if (action != AccessibilityNodeInfoCompat.ACTION_CLICK || !isCell(virtualViewId)) {
+                return false;
+            }
+            final MonthCellDescriptor cell = cell(virtualViewId);
+            if (!isClickable(cell) || listener == null) {
+                return false;
+            }
+            listener.handleClick(cell);
+            sendEventForVirtualView(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import com.squareup.timessquare.MonthCellDescriptor.RangeState;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds the cells of a month's grid from a snapshot of the picker's settings.  It doesn't touch
+ * the picker, so it can run on any thread as long as its {@link SelectableDayCache} isn't shared
+ * with another one.  The cells come out unselected and unhighlighted: the picker fills in that
+ * state when the month is bound.
+ */
+final class MonthCellsBuilder {
+    private final DayCalendar dayCalendar;
+    private final int minDay;
+    private final int maxDay;
+    private final int todayDay;
+    private final SelectableDayCache selectableDays;
+
+    MonthCellsBuilder(final DayCalendar dayCalendar, final int minDay, final int maxDay,
+                      final int todayDay, final SelectableDayCache selectableDays) {
+        this.dayCalendar = dayCalendar;
+        this.minDay = minDay;
+        this.maxDay = maxDay;
+        this.todayDay = todayDay;
+        this.selectableDays = selectableDays;
+    }
+
+    List<List<MonthCellDescriptor>> build(final int monthKey) {
+        final int monthStart = DayCalendar.monthStart(monthKey);
+        final int nextMonthStart = DayCalendar.monthStart(monthKey + 1);
+        final int numWeeks = dayCalendar.weeksInGrid(monthKey);
+
+        final List<List<MonthCellDescriptor>> cells = new ArrayList<>(numWeeks);
+        int day = dayCalendar.gridStart(monthKey);
+        for (int week = 0; week < numWeeks; week++) {
+            final List<MonthCellDescriptor> weekCells = new ArrayList<>(7);
+            cells.add(weekCells);
+            for (int c = 0; c < 7; c++, day++) {
+                final Date date = dayCalendar.toDate(day);
+                final boolean isCurrentMonth = day >= monthStart && day < nextMonthStart;
+                final boolean isSelectable = isCurrentMonth && day >= minDay && day <= maxDay
+                        && selectableDays.isSelectable(day);
+                final boolean isToday = day == todayDay;
+                final int value =
+                        isCurrentMonth ? day - monthStart + 1 : DayCalendar.dayOfMonth(day);
+
+                weekCells.add(
+                        new MonthCellDescriptor(date, isCurrentMonth, isSelectable, false, isToday,
+                                false, value, RangeState.NONE));
+            }
+        }
+        return cells;
+    }
+}
@@ -5,23 +5,51 @@ import android.content.Context;
 import android.graphics.Typeface;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.view.ViewGroup;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import java.text.DateFormat;
-import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
 public class MonthView extends LinearLayout {
+    // What changed about a bound month, for update().
+    /**
+     * The selected or range state of some days.
+     */
+    static final int CHANGE_SELECTION = 1;
+    /**
+     * The highlighted state of some days.
+     */
+    static final int CHANGE_HIGHLIGHT = 1 << 1;
+    /**
+     * What the decorators would do to some days.
+     */
+    static final int CHANGE_DECORATIONS = 1 << 2;
+    /**
+     * Anything: the month must be bound again with init().
+     */
+    static final int CHANGE_ALL = ~0;
+
     TextView title;
     CalendarGridView grid;
     private Listener listener;
     private List<CalendarCellDecorator> decorators;
+    private List<CalendarMonthDecorator> monthDecorators;
+    private MonthDescriptor month;
+    private List<List<MonthCellDescriptor>> cells;
+    private DecorationCache decorationCache;
+    private int firstDay;
+    // The cells decorated by the last bind, handed to the month decorators.
+    private final List<Date> decoratedDates = new ArrayList<>(6 * 7);
+    private final List<CalendarCellView> decoratedCells = new ArrayList<>(6 * 7);
     private boolean isRtl;
-    private Locale locale;
+    private CalendarLabels labels;
 
     public static MonthView create(final ViewGroup parent, final LayoutInflater inflater,
                                    final DateFormat weekdayNameFormat, final Listener listener, final Calendar today, final int dividerColor,
@@ -37,36 +65,32 @@ public class MonthView extends LinearLayout {
                                    final int dayBackgroundResId, final int dayTextColorResId, final int titleTextColor, final boolean displayHeader,
                                    final int headerTextColor, final List<CalendarCellDecorator> decorators, final Locale locale,
                                    final DayViewAdapter adapter) {
+        final CalendarStyle style = new CalendarStyle(parent.getContext(), dividerColor,
+                dayBackgroundResId, dayTextColorResId, titleTextColor, displayHeader,
+                headerTextColor, null, null, locale, weekdayNameFormat,
+                today.getFirstDayOfWeek());
+        return create(parent, inflater, style, listener, decorators, adapter);
+    }
+
+    static MonthView create(final ViewGroup parent, final LayoutInflater inflater,
+                            final CalendarStyle style, final Listener listener,
+                            final List<CalendarCellDecorator> decorators,
+                            final DayViewAdapter adapter) {
         final MonthView view = (MonthView) inflater.inflate(R.layout.month, parent, false);
         view.setDayViewAdapter(adapter);
-        view.setDividerColor(dividerColor);
-        view.setDayTextColor(dayTextColorResId);
-        view.setTitleTextColor(titleTextColor);
-        view.setDisplayHeader(displayHeader);
-        view.setHeaderTextColor(headerTextColor);
-
-        if (dayBackgroundResId != 0) {
-            view.setDayBackground(dayBackgroundResId);
-        }
-
-        final int originalDayOfWeek = today.get(Calendar.DAY_OF_WEEK);
-
-        view.isRtl = isRtl(locale);
-        view.locale = locale;
-        final int firstDayOfWeek = today.getFirstDayOfWeek();
-        final CalendarRowView headerRow = (CalendarRowView) view.grid.getChildAt(0);
-        for (int offset = 0; offset < 7; offset++) {
-            today.set(Calendar.DAY_OF_WEEK, getDayOfWeek(firstDayOfWeek, offset, view.isRtl));
-            final TextView textView = (TextView) headerRow.getChildAt(offset);
-            textView.setText(weekdayNameFormat.format(today.getTime()));
+        view.isRtl = style.isRtl;
+        view.labels = style.labels;
+        view.title.setTextColor(style.titleTextColor);
+        if (style.titleTypeface != null) {
+            view.title.setTypeface(style.titleTypeface);
         }
-        today.set(Calendar.DAY_OF_WEEK, originalDayOfWeek);
+        view.grid.setStyle(style);
         view.listener = listener;
         view.decorators = decorators;
         return view;
     }
 
-    private static int getDayOfWeek(final int firstDayOfWeek, final int offset, final boolean isRtl) {
+    static int getDayOfWeek(final int firstDayOfWeek, final int offset, final boolean isRtl) {
         final int dayOfWeek = firstDayOfWeek + offset;
         if (isRtl) {
             return 8 - dayOfWeek;
@@ -74,7 +98,7 @@ public class MonthView extends LinearLayout {
         return dayOfWeek;
     }
 
-    private static boolean isRtl(final Locale locale) {
+    static boolean isRtl(final Locale locale) {
         // TODO convert the build to gradle and use getLayoutDirection instead of this (on 17+)?
         final int directionality = Character.getDirectionality(locale.getDisplayName(locale).charAt(0));
         return directionality == Character.DIRECTIONALITY_RIGHT_TO_LEFT
@@ -85,6 +109,10 @@ public class MonthView extends LinearLayout {
         super(context, attrs);
     }
 
+    public void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
     public void setDecorators(final List<CalendarCellDecorator> decorators) {
         this.decorators = decorators;
     }
@@ -93,6 +121,24 @@ public class MonthView extends LinearLayout {
         return decorators;
     }
 
+    public void setMonthDecorators(final List<CalendarMonthDecorator> monthDecorators) {
+        this.monthDecorators = monthDecorators;
+    }
+
+    public List<CalendarMonthDecorator> getMonthDecorators() {
+        return monthDecorators;
+    }
+
+    /**
+     * Skips decorating the cells {@code decorationCache} says are up to date from now on.
+     *
+     * @param firstDay the day (see {@link DayCalendar}) of the first cell of the grid.
+     */
+    void setDecorationCache(final DecorationCache decorationCache, final int firstDay) {
+        this.decorationCache = decorationCache;
+        this.firstDay = firstDay;
+    }
+
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
@@ -104,8 +150,11 @@ public class MonthView extends LinearLayout {
                      final boolean displayOnly, final Typeface titleTypeface, final Typeface dateTypeface) {
         Logr.d("Initializing MonthView (%d) for %s", System.identityHashCode(this), month);
         final long start = System.currentTimeMillis();
+        this.month = month;
+        this.cells = cells;
         title.setText(month.getLabel());
-        final NumberFormat numberFormatter = NumberFormat.getInstance(locale);
+        decoratedDates.clear();
+        decoratedCells.clear();
 
         final int numRows = cells.size();
         grid.setNumRows(numRows);
@@ -116,34 +165,23 @@ public class MonthView extends LinearLayout {
                 weekRow.setVisibility(VISIBLE);
                 final List<MonthCellDescriptor> week = cells.get(i);
                 for (int c = 0; c < week.size(); c++) {
-                    final MonthCellDescriptor cell = week.get(isRtl ? 6 - c : c);
+                    final int column = isRtl ? 6 - c : c;
+                    final MonthCellDescriptor cell = week.get(column);
                     final CalendarCellView cellView = (CalendarCellView) weekRow.getChildAt(c);
 
-                    final String cellDate = numberFormatter.format(cell.getValue());
-                    if (!cellView.getDayOfMonthTextView().getText().equals(cellDate)) {
-                        cellView.getDayOfMonthTextView().setText(cellDate);
-                    }
                     cellView.setEnabled(cell.isCurrentMonth());
                     cellView.setClickable(!displayOnly);
 
-                    cellView.setSelectable(cell.isSelectable());
                     cellView.setSelected(cell.isSelected());
-                    cellView.setCurrentMonth(cell.isCurrentMonth());
-                    cellView.setToday(cell.isToday());
-                    cellView.setRangeState(cell.getRangeState());
-                    cellView.setHighlighted(cell.isHighlighted());
+                    cellView.setCellState(CalendarCellView.cellState(cell));
                     cellView.setTag(cell);
-
-                    if (decorators != null) {
-                        for (final CalendarCellDecorator decorator : decorators) {
-                            decorator.decorate(cellView, cell.getDate());
-                        }
-                    }
+                    decorate(cell, cellView, firstDay + i * 7 + column);
                 }
             } else {
                 weekRow.setVisibility(GONE);
             }
         }
+        decorateMonth();
 
         if (titleTypeface != null) {
             title.setTypeface(titleTypeface);
@@ -155,6 +193,109 @@ public class MonthView extends LinearLayout {
         Logr.d("MonthView.init took %d ms", System.currentTimeMillis() - start);
     }
 
+    /**
+     * Applies {@code changes}, a combination of the {@code CHANGE_} flags other than
+     * {@link #CHANGE_ALL}, to this view's month, whose {@code cells} it was last
+     * {@link #init initialized} with: only the cell properties the changes affect are touched.
+     */
+    void update(final List<List<MonthCellDescriptor>> cells, final int changes) {
+        this.cells = cells;
+        final boolean dayStateChanged = (changes & (CHANGE_SELECTION | CHANGE_HIGHLIGHT)) != 0;
+        final boolean decorationsChanged = (changes & CHANGE_DECORATIONS) != 0;
+        if (decorationsChanged) {
+            decoratedDates.clear();
+            decoratedCells.clear();
+        }
+        for (int i = 0; i < cells.size(); i++) {
+            final CalendarRowView weekRow = (CalendarRowView) grid.getChildAt(i + 1);
+            final List<MonthCellDescriptor> week = cells.get(i);
+            for (int c = 0; c < week.size(); c++) {
+                final int column = isRtl ? 6 - c : c;
+                final MonthCellDescriptor cell = week.get(column);
+                final CalendarCellView cellView = (CalendarCellView) weekRow.getChildAt(c);
+                // Cheap, and the cells may have been rebuilt since the view was initialized.
+                cellView.setTag(cell);
+                if (dayStateChanged) {
+                    cellView.setSelected(cell.isSelected());
+                    cellView.setCellState(CalendarCellView.cellState(cell));
+                }
+                if (decorationsChanged) {
+                    decorate(cell, cellView, firstDay + i * 7 + column);
+                }
+            }
+        }
+        if (decorationsChanged) {
+            decorateMonth();
+        }
+    }
+
+    /**
+     * Resets {@code cellView}'s text and runs the cell decorators on it, unless the decoration
+     * cache says it already shows the decorations of {@code day}.  Collects the cells it decorates
+     * for {@link #decorateMonth()}.
+     */
+    private void decorate(final MonthCellDescriptor cell, final CalendarCellView cellView,
+                          final int day) {
+        if (decorationCache != null) {
+            if (decorationCache.isDecorated(cellView, day)) {
+                return;
+            }
+            decorationCache.markDecorated(cellView, day);
+        }
+        // Decorators may have changed the text of what the cell showed before.
+        final String cellDate = labels.dayOfMonth(cell.getValue());
+        if (!cellView.getDayOfMonthTextView().getText().equals(cellDate)) {
+            cellView.getDayOfMonthTextView().setText(cellDate);
+        }
+        if (decorators != null) {
+            for (final CalendarCellDecorator decorator : decorators) {
+                decorator.decorate(cellView, cell.getDate());
+            }
+        }
+        decoratedDates.add(cell.getDate());
+        decoratedCells.add(cellView);
+    }
+
+    /**
+     * Runs the month decorators on the cells the last bind decorated, if there are any.
+     */
+    private void decorateMonth() {
+        if (monthDecorators == null || decoratedDates.isEmpty()) {
+            return;
+        }
+        for (final CalendarMonthDecorator decorator : monthDecorators) {
+            decorator.decorate(month, decoratedDates, decoratedCells);
+        }
+    }
+
+    /**
+     * Returns the cell at ({@code x}, {@code y}), relative to this view, if it can be clicked, or
+     * null.
+     */
+    MonthCellDescriptor clickableCellAt(final float x, final float y) {
+        final float gridX = x - grid.getLeft();
+        final float gridY = y - grid.getTop();
+        for (int i = 1; i < grid.getChildCount(); i++) {
+            final CalendarRowView weekRow = (CalendarRowView) grid.getChildAt(i);
+            if (weekRow.getVisibility() == VISIBLE
+                    && gridY >= weekRow.getTop() && gridY < weekRow.getBottom()) {
+                final View cellView = weekRow.clickableCellAt(gridX - weekRow.getLeft(),
+                        gridY - weekRow.getTop());
+                return cellView == null ? null : (MonthCellDescriptor) cellView.getTag();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the dates of the cells the last bind decorated to {@code dates} and the cells to
+     * {@code cellViews}, in the order {@link CalendarMonthDecorator}s get them.
+     */
+    void getDecoratedCells(final List<Date> dates, final List<CalendarCellView> cellViews) {
+        dates.addAll(decoratedDates);
+        cellViews.addAll(decoratedCells);
+    }
+
     public void setDividerColor(final int color) {
         grid.setDividerColor(color);
     }
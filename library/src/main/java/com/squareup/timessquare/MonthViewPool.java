@@ -0,0 +1,168 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Month views that pickers no longer need, kept for other pickers to reuse instead of inflating
+ * new ones.  A view is only handed to a picker with the same {@link DayViewAdapter}, renderer and
+ * style as the one it came from.  Share a pool between the pickers of a screen, or keep one to
+ * reuse the views of a dialog's picker when the dialog is shown again:
+ * <pre>
+ * picker.setMonthViewPool(pool);
+ * </pre>
+ * {@link CalendarPickerView}s share the views their list recycles with each other, and so do
+ * {@link CalendarRecyclerView}s.  Views keep the {@link android.content.Context} they
+ * were created with, so don't share a pool across activities.  Must only be used on the main
+ * thread.
+ */
+public final class MonthViewPool {
+    private static final int DEFAULT_MAX_VIEWS_PER_STYLE = 6;
+
+    private final int maxViewsPerStyle;
+    private final Map<Key, Integer> viewTypes = new HashMap<>();
+    private final SparseArray<List<View>> views = new SparseArray<>();
+    private final RecyclerView.RecycledViewPool recycledViewPool =
+            new RecyclerView.RecycledViewPool();
+
+    public MonthViewPool() {
+        this(DEFAULT_MAX_VIEWS_PER_STYLE);
+    }
+
+    /**
+     * @param maxViewsPerStyle how many views to keep for each combination of day view adapter,
+     *                         renderer and style.
+     */
+    public MonthViewPool(final int maxViewsPerStyle) {
+        this.maxViewsPerStyle = maxViewsPerStyle;
+    }
+
+    /**
+     * Drops all the views in the pool.
+     */
+    public void clear() {
+        views.clear();
+        recycledViewPool.clear();
+    }
+
+    /**
+     * Returns the view type of month views created for {@code key}: a small number that's the same
+     * for all pickers using this pool.
+     */
+    int getViewType(final Key key) {
+        Integer viewType = viewTypes.get(key);
+        if (viewType == null) {
+            viewType = viewTypes.size();
+            viewTypes.put(key, viewType);
+            recycledViewPool.setMaxRecycledViews(viewType, maxViewsPerStyle);
+        }
+        return viewType;
+    }
+
+    /**
+     * Returns a released view created for {@code key} for {@code picker} to use, or null if there
+     * is none.  Views {@code picker} released itself are left out: its list still holds them and
+     * hands them back through {@link #reclaim(View, Object)}.
+     */
+    View acquire(final Key key, final Object picker) {
+        final List<View> released = views.get(getViewType(key));
+        if (released == null) {
+            return null;
+        }
+        for (int i = released.size() - 1; i >= 0; i--) {
+            final View monthView = released.get(i);
+            if (monthView.getTag(R.id.month_view_holder) != picker) {
+                released.remove(i);
+                monthView.setTag(R.id.month_view_holder, picker);
+                return monthView;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps {@code monthView}, which isn't shown anymore, for reuse.  {@code picker} is the picker
+     * whose list may still hand the view back to it, or null if none will.  Does nothing if
+     * another picker has taken the view since {@code picker} last released it.
+     */
+    void release(final View monthView, final Object picker) {
+        final Object holder = monthView.getTag(R.id.month_view_holder);
+        if (holder != null && holder != picker) {
+            return;
+        }
+        monthView.setTag(R.id.month_view_holder, picker);
+        final int viewType = getViewType((Key) monthView.getTag(R.id.month_view_key));
+        List<View> released = views.get(viewType);
+        if (released == null) {
+            released = new ArrayList<>(maxViewsPerStyle);
+            views.put(viewType, released);
+        }
+        if (released.size() < maxViewsPerStyle && !released.contains(monthView)) {
+            released.add(monthView);
+        }
+    }
+
+    /**
+     * Takes {@code monthView}, which {@code picker}'s list hands back to it, out of the pool.
+     * Returns false if another picker has taken it meanwhile: {@code picker} mustn't use it.
+     */
+    boolean reclaim(final View monthView, final Object picker) {
+        final Object holder = monthView.getTag(R.id.month_view_holder);
+        if (holder != null && holder != picker) {
+            return false;
+        }
+        final List<View> released = views.get(
+                getViewType((Key) monthView.getTag(R.id.month_view_key)));
+        if (released != null) {
+            released.remove(monthView);
+        }
+        monthView.setTag(R.id.month_view_holder, picker);
+        return true;
+    }
+
+    RecyclerView.RecycledViewPool getRecycledViewPool() {
+        return recycledViewPool;
+    }
+
+    /**
+     * What month views are created with and can't be changed by binding them: views can only be
+     * reused in place of one another if their keys are equal.
+     */
+    static final class Key {
+        private final Class<?> viewClass;
+        private final CalendarStyle style;
+
+        /**
+         * @param viewClass the class of the {@link DayViewAdapter}, or of the renderer if it
+         *                  doesn't use one.
+         */
+        Key(final Class<?> viewClass, final CalendarStyle style) {
+            this.viewClass = viewClass;
+            this.style = style;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return viewClass == key.viewClass && style.equals(key.style);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * viewClass.hashCode() + style.hashCode();
+        }
+    }
+}
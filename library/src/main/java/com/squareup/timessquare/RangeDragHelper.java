@@ -0,0 +1,213 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import android.os.SystemClock;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+/**
+ * Lets the user select a range by pressing and holding one end, then dragging to the other across
+ * the days and months.  The picker passes its touch events through here first: once the press
+ * turns into a drag, the picker takes the touches over from its month views and its own scrolling,
+ * and scrolls by itself while the touch is held near its top or bottom edge.
+ */
+final class RangeDragHelper {
+    /**
+     * What the helper needs of the picker besides its children.
+     */
+    interface Callback {
+        /**
+         * Passes {@code event} to the picker's own touch handling, bypassing the helper.
+         */
+        void onPickerTouchEvent(MotionEvent event);
+
+        /**
+         * Scrolls the picker's content by {@code dy} pixels.
+         */
+        void scrollContentBy(int dy);
+    }
+
+    /** How close to the top or bottom edge, in dips, the touch makes the picker scroll. */
+    private static final int AUTO_SCROLL_EDGE_DIPS = 48;
+    /** How far the picker scrolls each frame, in dips, when the touch is right at an edge. */
+    private static final int AUTO_SCROLL_MAX_STEP_DIPS = 16;
+
+    private final ViewGroup picker;
+    private final CalendarPickerController controller;
+    private final Callback callback;
+    private final int touchSlop;
+    private final int autoScrollEdge;
+    private final int autoScrollMaxStep;
+    private final Runnable startDrag = new Runnable() {
+        @Override
+        public void run() {
+            if (controller.startRangeDrag(pressedCell)) {
+                dragging = true;
+                lastX = downX;
+                lastY = downY;
+                picker.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+                // Keep whatever the picker is in from scrolling while the range is dragged.
+                final ViewParent parent = picker.getParent();
+                if (parent != null) {
+                    parent.requestDisallowInterceptTouchEvent(true);
+                }
+                // The picker won't see the rest of the gesture: end its own press or scroll now.
+                final MotionEvent cancel = MotionEvent.obtain(downTime,
+                        SystemClock.uptimeMillis(), MotionEvent.ACTION_CANCEL, downX, downY, 0);
+                callback.onPickerTouchEvent(cancel);
+                cancel.recycle();
+            }
+        }
+    };
+    private final Runnable autoScroll = new Runnable() {
+        @Override
+        public void run() {
+            final int step = autoScrollStep(lastY);
+            if (!dragging || step == 0 || !picker.canScrollVertically(step)) {
+                autoScrolling = false;
+                return;
+            }
+            callback.scrollContentBy(step);
+            // Other days come under the touch as the months move.
+            dragTo(lastX, lastY);
+            picker.postOnAnimation(this);
+        }
+    };
+    private MonthCellDescriptor pressedCell;
+    private long downTime;
+    private float downX;
+    private float downY;
+    private float lastX;
+    private float lastY;
+    private boolean dragging;
+    private boolean autoScrolling;
+
+    RangeDragHelper(final ViewGroup picker, final CalendarPickerController controller,
+            final Callback callback) {
+        this.picker = picker;
+        this.controller = controller;
+        this.callback = callback;
+        touchSlop = ViewConfiguration.get(picker.getContext()).getScaledTouchSlop();
+        final float density = picker.getResources().getDisplayMetrics().density;
+        autoScrollEdge = (int) (AUTO_SCROLL_EDGE_DIPS * density + 0.5f);
+        autoScrollMaxStep = (int) (AUTO_SCROLL_MAX_STEP_DIPS * density + 0.5f);
+    }
+
+    /**
+     * Watches the touches the month views get, and returns true once they're dragging a range.
+     */
+    boolean onInterceptTouchEvent(final MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                dragging = false;
+                downTime = event.getDownTime();
+                downX = event.getX();
+                downY = event.getY();
+                pressedCell = controller.canDragRange() ? cellAt(downX, downY) : null;
+                if (pressedCell != null) {
+                    picker.postDelayed(startDrag, ViewConfiguration.getLongPressTimeout());
+                }
+                return false;
+            case MotionEvent.ACTION_MOVE:
+                if (!dragging && (Math.abs(event.getX() - downX) > touchSlop
+                        || Math.abs(event.getY() - downY) > touchSlop)) {
+                    // It's a scroll, not a press.
+                    picker.removeCallbacks(startDrag);
+                }
+                return onTouchEvent(event);
+            default:
+                return onTouchEvent(event);
+        }
+    }
+
+    /**
+     * Moves the dragged end of the range with the touches, and returns true if there is a drag.
+     */
+    boolean onTouchEvent(final MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_MOVE:
+                if (dragging) {
+                    lastX = event.getX();
+                    lastY = event.getY();
+                    dragTo(lastX, lastY);
+                    if (!autoScrolling && autoScrollStep(lastY) != 0) {
+                        autoScrolling = true;
+                        picker.postOnAnimation(autoScroll);
+                    }
+                }
+                return dragging;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                picker.removeCallbacks(startDrag);
+                picker.removeCallbacks(autoScroll);
+                autoScrolling = false;
+                pressedCell = null;
+                if (dragging) {
+                    dragging = false;
+                    controller.endRangeDrag();
+                    return true;
+                }
+                return false;
+            default:
+                return dragging;
+        }
+    }
+
+    private void dragTo(final float x, final float y) {
+        final MonthCellDescriptor cell = cellAt(x, y);
+        if (cell != null) {
+            controller.dragRangeTo(cell);
+        }
+    }
+
+    /**
+     * Returns how far to scroll the picker each frame with the touch at {@code y}: up to
+     * {@link #autoScrollMaxStep} pixels the closer it is to an edge, negative for the top one, and
+     * 0 away from the edges.
+     */
+    private int autoScrollStep(final float y) {
+        final int height = picker.getHeight();
+        final int edge = Math.min(autoScrollEdge, height / 4);
+        if (edge <= 0) {
+            return 0;
+        }
+        final float depth;
+        if (y < edge) {
+            depth = y - edge;
+        } else if (y > height - edge) {
+            depth = y - (height - edge);
+        } else {
+            return 0;
+        }
+        final float fraction = Math.max(-1f, Math.min(1f, depth / edge));
+        final int step = (int) (fraction * autoScrollMaxStep);
+        return step != 0 ? step : (depth < 0 ? -1 : 1);
+    }
+
+    /**
+     * Returns the clickable cell at ({@code x}, {@code y}), relative to the picker, or null.
+     */
+    private MonthCellDescriptor cellAt(final float x, final float y) {
+        for (int i = 0; i < picker.getChildCount(); i++) {
+            final View child = picker.getChildAt(i);
+            if (x < child.getLeft() || x >= child.getRight()
+                    || y < child.getTop() || y >= child.getBottom()) {
+                continue;
+            }
+            if (child instanceof MonthView) {
+                return ((MonthView) child).clickableCellAt(x - child.getLeft(),
+                        y - child.getTop());
+            }
+            if (child instanceof MonthCanvasView) {
+                return ((MonthCanvasView) child).clickableCellAt(x - child.getLeft(),
+                        y - child.getTop());
+            }
+            return null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright 2016 Square, Inc.
+package com.squareup.timessquare;
+
+import com.squareup.timessquare.CalendarPickerView.BatchDateSelectableFilter;
+import com.squareup.timessquare.CalendarPickerView.DateSelectableFilter;
+
+import java.util.BitSet;
+
+/**
+ * Remembers what a {@link DateSelectableFilter} said about each day, so the filter is asked about
+ * a day once rather than every time its month is built or the day is clicked.  A
+ * {@link BatchDateSelectableFilter} is asked about a whole month at a time.
+ * <p/>
+ * Not thread safe.
+ */
+final class SelectableDayCache {
+    private final DayCalendar dayCalendar;
+    private final DateSelectableFilter filter;
+    private final DaySet knownDays = new DaySet();
+    private final DaySet selectableDays = new DaySet();
+
+    /**
+     * @param minDay the earliest day that will be asked about.
+     */
+    SelectableDayCache(final DayCalendar dayCalendar, final DateSelectableFilter filter,
+                       final int minDay) {
+        this.dayCalendar = dayCalendar;
+        this.filter = filter;
+        knownDays.reset(minDay);
+        selectableDays.reset(minDay);
+    }
+
+    boolean isSelectable(final int day) {
+        if (filter == null) {
+            return true;
+        }
+        if (!knownDays.contains(day)) {
+            if (filter instanceof BatchDateSelectableFilter) {
+                loadMonth(DayCalendar.monthKey(day));
+            } else {
+                load(day, filter.isDateSelectable(dayCalendar.toDate(day)));
+            }
+        }
+        return selectableDays.contains(day);
+    }
+
+    /**
+     * Asks a {@link BatchDateSelectableFilter} about the whole month identified by
+     * {@code monthKey}.
+     */
+    private void loadMonth(final int monthKey) {
+        final int monthStart = DayCalendar.monthStart(monthKey);
+        final int dayCount = DayCalendar.daysInMonth(monthKey);
+        final BitSet selectable = ((BatchDateSelectableFilter) filter).getSelectableDates(
+                dayCalendar.toDate(monthStart), dayCount);
+        for (int i = 0; i < dayCount; i++) {
+            load(monthStart + i, selectable.get(i));
+        }
+    }
+
+    /**
+     * Forgets the answers for {@code fromDay} to {@code toDay}, both inclusive.
+     */
+    void invalidate(final int fromDay, final int toDay) {
+        for (int day = knownDays.next(fromDay); day != DayCalendar.NO_DAY && day <= toDay;
+             day = knownDays.next(day + 1)) {
+            knownDays.remove(day);
+            selectableDays.remove(day);
+        }
+    }
+
+    private void load(final int day, final boolean selectable) {
+        if (knownDays.add(day) && selectable) {
+            selectableDays.add(day);
+        }
+    }
+}
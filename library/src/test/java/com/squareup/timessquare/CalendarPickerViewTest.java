@@ -2,6 +2,14 @@
 package com.squareup.timessquare;
 
 import android.app.Activity;
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
 import android.widget.TextView;
 
 import org.intellij.lang.annotations.MagicConstant;
@@ -12,14 +20,22 @@ import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.lang.reflect.Field;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
 
 import static com.squareup.timessquare.CalendarPickerView.SelectionMode.MULTIPLE;
+import static com.squareup.timessquare.CalendarPickerView.SelectionMode.MULTI_RANGE;
 import static com.squareup.timessquare.CalendarPickerView.SelectionMode.RANGE;
 import static com.squareup.timessquare.CalendarPickerView.SelectionMode.SINGLE;
 import static com.squareup.timessquare.MonthCellDescriptor.RangeState.FIRST;
@@ -82,7 +98,7 @@ public class CalendarPickerViewTest {
                 .withSelectedDate(startDate);
 
         // Do not change the internal state of the CalendarPickerView until init() has run.
-        view.today.setTime(startDate);
+        view.controller.today.setTime(startDate);
     }
 
     @Test
@@ -92,7 +108,7 @@ public class CalendarPickerViewTest {
         view.init(dec2012.getTime(), dec2013.getTime(), locale) //
                 .inMode(SINGLE) //
                 .withSelectedDate(dec2012.getTime());
-        assertThat(view.months).hasSize(12);
+        assertThat(view.controller.monthCount).isEqualTo(12);
     }
 
     @Test
@@ -102,7 +118,7 @@ public class CalendarPickerViewTest {
         view.init(jan2012.getTime(), jan2013.getTime(), locale) //
                 .inMode(SINGLE) //
                 .withSelectedDate(jan2012.getTime());
-        assertThat(view.months).hasSize(12);
+        assertThat(view.controller.monthCount).isEqualTo(12);
     }
 
     @Test
@@ -112,7 +128,622 @@ public class CalendarPickerViewTest {
         view.init(may2012.getTime(), may2013.getTime(), locale) //
                 .inMode(SINGLE) //
                 .withSelectedDate(may2012.getTime());
-        assertThat(view.months).hasSize(12);
+        assertThat(view.controller.monthCount).isEqualTo(12);
+    }
+
+    @Test
+    public void testMonthCellsAreBuiltOnDemand() throws Exception {
+        view.init(minDate, maxDate, locale) //
+                .inMode(SINGLE);
+        assertThat(view.controller.monthCount).isEqualTo(13);
+        assertThat(view.controller.cells.size()).isEqualTo(0);
+
+        Calendar feb12 = buildCal(2013, FEBRUARY, 12);
+        view.selectDate(feb12.getTime());
+        assertThat(view.controller.cells.get(3)).isNotNull();
+        assertThat(view.controller.cells.get(2)).isNull();
+        assertThat(view.controller.cells.get(4)).isNull();
+    }
+
+    @Test
+    public void testMonthsBuiltAfterASelectionMatchThoseBuiltBefore() throws Exception {
+        view.init(minDate, maxDate, locale) //
+                .inMode(MULTIPLE);
+        view.getAdapter().getView(2, null, view);
+        assertThat(view.controller.cells.get(1)).isNull();
+        assertThat(view.controller.cells.get(2)).isNotNull();
+        assertThat(view.controller.cells.get(3)).isNull();
+
+        view.selectDate(buildCal(2013, JANUARY, 10).getTime());
+        view.selectDate(buildCal(2013, JANUARY, 12).getTime());
+        view.selectDate(buildCal(2013, FEBRUARY, 12).getTime());
+        final List<List<MonthCellDescriptor>> january = view.controller.cells.get(2);
+        assertCell(january, 1, 4, 10, true, true, false, true, NONE);
+        assertCell(january, 1, 5, 11, true, false, false, true, NONE);
+        assertCell(january, 1, 6, 12, true, true, false, true, NONE);
+        // February is built by its selection, after January's: it shows no range either.
+        assertCell(view.controller.cells.get(3), 2, 2, 12, true, true, false, true, NONE);
+        assertCell(view.controller.cells.get(3), 2, 3, 13, true, false, false, true, NONE);
+    }
+
+    @Test
+    public void testOpenEndedPickerOnlyKeepsMonthsNearTheLastOneShown() throws Exception {
+        view.initOpenEnded(minDate, locale) //
+                .inMode(SINGLE);
+        assertThat(view.controller.monthCount).isEqualTo(1000 * 12 + 1);
+
+        for (int position = 0; position < 100; position++) {
+            view.getAdapter().getView(position, null, view);
+        }
+        assertThat(view.controller.cells.size())
+                .isLessThanOrEqualTo(CalendarPickerController.MONTH_WINDOW * 2 + 2);
+        assertThat(view.controller.cells.get(99)).isNotNull();
+        assertThat(view.controller.cells.get(0)).isNull();
+        assertThat(view.controller.getMonth(99).getYear()).isEqualTo(2021);
+    }
+
+    @Test
+    public void testRecyclerViewMonthIdsFollowTheirMonths() throws Exception {
+        final CalendarRecyclerView recyclerView = new CalendarRecyclerView(activity, null);
+        recyclerView.init(minDate, maxDate, locale) //
+                .inMode(MULTIPLE) //
+                .withSelectedDate(buildCal(2013, MAY, 5).getTime());
+        assertThat(recyclerView.getAdapter().getItemCount()).isEqualTo(13);
+        assertThat(recyclerView.getAdapter().getItemId(0)).isEqualTo(2012 * 12 + NOVEMBER);
+
+        today.set(2013, MARCH, 1, 0, 0);
+        recyclerView.init(today.getTime(), maxDate, locale);
+        assertThat(recyclerView.getAdapter().getItemId(2)).isEqualTo(2013 * 12 + MAY);
+        assertThat(recyclerView.getSelectedDates()).isEmpty();
+    }
+
+    @Test
+    public void testDrawMonthsOnCanvasFallsBackToViewsForDecorators() throws Exception {
+        view.setDrawMonthsOnCanvas(true);
+        final View canvasMonth = view.getAdapter().getView(0, null, view);
+        assertThat(canvasMonth).isInstanceOf(MonthCanvasView.class);
+        assertThat(view.getAdapter().getView(1, canvasMonth, view)).isSameAs(canvasMonth);
+
+        view.setDecorators(Arrays.<CalendarCellDecorator>asList(new CalendarCellDecorator() {
+            @Override
+            public void decorate(CalendarCellView cellView, Date date) {
+            }
+        }));
+        assertThat(view.getAdapter().getView(0, canvasMonth, view)).isInstanceOf(MonthView.class);
+    }
+
+    @Test
+    public void testCanvasMonthsNarrowerThanAWeekIgnoreTouches() throws Exception {
+        view.setDrawMonthsOnCanvas(true);
+        final View canvasMonth = view.getAdapter().getView(0, null, view);
+        // Cells are 0 pixels wide, but the grid borders still take 2.
+        canvasMonth.measure(View.MeasureSpec.makeMeasureSpec(5, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        assertThat(canvasMonth.onTouchEvent(
+                MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 1, 500, 0))).isFalse();
+    }
+
+    @Test
+    public void testCanvasMonthsExposeEachDayToAccessibility() throws Exception {
+        view.setDrawMonthsOnCanvas(true);
+        final View canvasMonth = view.getAdapter().getView(0, null, view);
+        final AccessibilityNodeProvider provider = canvasMonth.getAccessibilityNodeProvider();
+        // November 20th, 2012 is drawn in the fourth row, on a Tuesday.
+        final int nov20 = 3 * 7 + 2;
+        assertThat(provider.createAccessibilityNodeInfo(nov20).getContentDescription().toString())
+                .isEqualTo("Tuesday, November 20, 2012");
+        assertThat(provider.performAction(nov20, AccessibilityNodeInfo.ACTION_CLICK, null))
+                .isTrue();
+        assertThat(view.getSelectedDate()).isEqualTo(buildCal(2012, NOVEMBER, 20).getTime());
+
+        // October 28th is shown but isn't part of the month.
+        assertThat(provider.performAction(0, AccessibilityNodeInfo.ACTION_CLICK, null)).isFalse();
+    }
+
+    @Test
+    public void testPickersSharingAPoolReuseEachOthersMonthViews() throws Exception {
+        final MonthViewPool pool = new MonthViewPool();
+        final CalendarPickerView other = new CalendarPickerView(activity, null);
+        other.init(minDate, maxDate, locale);
+        other.setMonthViewPool(pool);
+        view.setMonthViewPool(pool);
+
+        final View month = view.getAdapter().getView(0, null, view);
+        // A new typeface means new views: the old one goes to the pool.
+        view.setTitleTypeface(Typeface.DEFAULT_BOLD);
+        assertThat(view.getAdapter().getView(0, month, view)).isNotSameAs(month);
+        assertThat(other.getAdapter().getView(0, null, other)).isSameAs(month);
+    }
+
+    @Test
+    public void testPreparedMonthViewsWaitInThePool() throws Exception {
+        final MonthViewPool pool = new MonthViewPool();
+        view.setMonthViewPool(pool);
+        view.prepareMonthViews(2);
+        runIdleHandlers();
+
+        // The first month bound takes one of the two prepared views, which leaves one.
+        final View month = view.getAdapter().getView(0, null, view);
+        final MonthViewPool.Key key = (MonthViewPool.Key) month.getTag(R.id.month_view_key);
+        final Object otherPicker = new Object();
+        assertThat(pool.acquire(key, otherPicker)).isNotNull().isNotSameAs(month);
+        assertThat(pool.acquire(key, otherPicker)).isNull();
+    }
+
+    @Test
+    public void testRecycledViewsAreOnlyReclaimedIfNoOtherPickerTookThem() throws Exception {
+        final MonthViewPool pool = new MonthViewPool();
+        final View month = view.getAdapter().getView(0, null, view);
+        final MonthViewPool.Key key = (MonthViewPool.Key) month.getTag(R.id.month_view_key);
+        final Object picker = new Object();
+        final Object otherPicker = new Object();
+
+        // The picker's list still holds the views it recycled: it gets them back as convert views.
+        pool.release(month, picker);
+        assertThat(pool.acquire(key, picker)).isNull();
+        assertThat(pool.reclaim(month, picker)).isTrue();
+        assertThat(pool.acquire(key, otherPicker)).isNull();
+
+        pool.release(month, picker);
+        assertThat(pool.acquire(key, otherPicker)).isSameAs(month);
+        assertThat(pool.reclaim(month, picker)).isFalse();
+        // The list recycling it again doesn't put it back in the pool.
+        pool.release(month, picker);
+        assertThat(pool.acquire(key, new Object())).isNull();
+    }
+
+    @Test
+    public void testMonthViewsAreStyledWhenCreated() throws Exception {
+        view.setTitleTypeface(Typeface.DEFAULT_BOLD);
+        final MonthView month = (MonthView) view.getAdapter().getView(0, null, view);
+        assertThat(month.title.getTypeface()).isSameAs(Typeface.DEFAULT_BOLD);
+        final CalendarRowView header = (CalendarRowView) month.grid.getChildAt(0);
+        assertThat(((TextView) header.getChildAt(0)).getText().toString()).isEqualTo("Sun");
+    }
+
+    @Test
+    public void testCellStatesArePacked() throws Exception {
+        final CalendarCellView cell = new CalendarCellView(activity, null);
+        cell.setToday(true);
+        cell.setRangeState(FIRST);
+        cell.setRangeState(LAST);
+        assertThat(cell.isToday()).isTrue();
+        assertThat(cell.isSelectable()).isFalse();
+        assertThat(cell.getDrawableState()) //
+                .contains(R.attr.tsquare_state_today, R.attr.tsquare_state_range_last) //
+                .doesNotContain(R.attr.tsquare_state_range_first);
+    }
+
+    @Test
+    public void testSelectionUpdatesDoNotRunDecorators() throws Exception {
+        final int[] decorated = {0};
+        view.setDecorators(Arrays.<CalendarCellDecorator>asList(new CalendarCellDecorator() {
+            @Override
+            public void decorate(CalendarCellView cellView, Date date) {
+                decorated[0]++;
+            }
+        }));
+        final MonthView month = (MonthView) view.getAdapter().getView(0, null, view);
+        decorated[0] = 0;
+
+        view.selectDate(buildCal(2012, NOVEMBER, 20).getTime());
+        view.controller.updateMonthView(month, 0, MonthView.CHANGE_SELECTION);
+        assertThat(decorated[0]).isZero();
+        // November 20th, 2012 is in the fourth week, on a Tuesday.
+        final CalendarRowView week = (CalendarRowView) month.grid.getChildAt(4);
+        assertThat(week.getChildAt(2).isSelected()).isTrue();
+
+        view.invalidateDecorations(buildCal(2012, NOVEMBER, 1).getTime(),
+                buildCal(2012, NOVEMBER, 30).getTime());
+        view.controller.updateMonthView(month, 0, MonthView.CHANGE_DECORATIONS);
+        assertThat(decorated[0]).isEqualTo(30);
+    }
+
+    @Test
+    public void testOnlyInvalidatedDaysAreDecoratedAgain() throws Exception {
+        final List<Date> decorated = new ArrayList<Date>();
+        view.setDecorators(Arrays.<CalendarCellDecorator>asList(new CalendarCellDecorator() {
+            @Override
+            public void decorate(CalendarCellView cellView, Date date) {
+                decorated.add(date);
+            }
+        }));
+        final View month = view.getAdapter().getView(0, null, view);
+        assertThat(decorated).hasSize(35);
+
+        decorated.clear();
+        view.getAdapter().getView(0, month, view);
+        assertThat(decorated).isEmpty();
+
+        final Date date = buildCal(2012, NOVEMBER, 20).getTime();
+        view.invalidateDecorations(Arrays.asList(date));
+        view.getAdapter().getView(0, month, view);
+        assertThat(decorated).containsExactly(date);
+
+        decorated.clear();
+        view.getAdapter().getView(1, month, view);
+        assertThat(decorated).hasSize(35);
+    }
+
+    @Test
+    public void testReplacingTheFilterRebuildsMonthsAlreadyBound() throws Exception {
+        final MonthView month = (MonthView) view.getAdapter().getView(0, null, view);
+        // November 20th, 2012 is in the fourth week, on a Tuesday.
+        final CalendarRowView week = (CalendarRowView) month.grid.getChildAt(4);
+        assertThat(((CalendarCellView) week.getChildAt(2)).isSelectable()).isTrue();
+
+        view.setDateSelectableFilter(new CalendarPickerView.DateSelectableFilter() {
+            @Override
+            public boolean isDateSelectable(Date date) {
+                return false;
+            }
+        });
+        view.getAdapter().getView(0, month, view);
+        assertThat(view.controller.getMonthCells(0).get(3).get(2).isSelectable()).isFalse();
+        assertThat(((CalendarCellView) week.getChildAt(2)).isSelectable()).isFalse();
+    }
+
+    @Test
+    public void testInvalidatingSelectableDatesDecoratesThemAgain() throws Exception {
+        final List<Date> decorated = new ArrayList<Date>();
+        view.setDecorators(Arrays.<CalendarCellDecorator>asList(new CalendarCellDecorator() {
+            @Override
+            public void decorate(CalendarCellView cellView, Date date) {
+                decorated.add(date);
+            }
+        }));
+        final View month = view.getAdapter().getView(0, null, view);
+        decorated.clear();
+        view.invalidateSelectableDates(buildCal(2012, NOVEMBER, 20).getTime(),
+                buildCal(2012, NOVEMBER, 21).getTime());
+        view.getAdapter().getView(0, month, view);
+        assertThat(decorated).containsExactly(buildCal(2012, NOVEMBER, 20).getTime(),
+                buildCal(2012, NOVEMBER, 21).getTime());
+    }
+
+    @Test
+    public void testInvalidatingDaysInsideAnInvalidatedRangeSplitsIt() throws Exception {
+        final List<Date> decorated = new ArrayList<Date>();
+        view.setDecorators(Arrays.<CalendarCellDecorator>asList(new CalendarCellDecorator() {
+            @Override
+            public void decorate(CalendarCellView cellView, Date date) {
+                decorated.add(date);
+            }
+        }));
+        final View month = view.getAdapter().getView(0, null, view);
+        view.invalidateDecorations(buildCal(2012, NOVEMBER, 1).getTime(),
+                buildCal(2012, NOVEMBER, 30).getTime());
+        view.invalidateDecorations(buildCal(2012, NOVEMBER, 10).getTime(),
+                buildCal(2012, NOVEMBER, 12).getTime());
+        decorated.clear();
+        view.getAdapter().getView(0, month, view);
+        assertThat(decorated).hasSize(30);
+
+        decorated.clear();
+        view.invalidateDecorations(buildCal(2012, NOVEMBER, 11).getTime(),
+                buildCal(2012, NOVEMBER, 11).getTime());
+        view.getAdapter().getView(0, month, view);
+        assertThat(decorated).containsExactly(buildCal(2012, NOVEMBER, 11).getTime());
+    }
+
+    @Test
+    public void testRowsDispatchTapsToTheCellUnderThem() throws Exception {
+        final MonthView month = (MonthView) view.getAdapter().getView(0, null, view);
+        // November 20th, 2012 is in the fourth week, on a Tuesday.
+        final CalendarRowView week = (CalendarRowView) month.grid.getChildAt(4);
+        week.layout(0, 0, 100, 14);
+        // Columns start at 0, 14, 28, 42, 57, 71 and 85.
+        assertThat(week.columnAt(13)).isEqualTo(0);
+        assertThat(week.columnAt(14)).isEqualTo(1);
+        assertThat(week.columnAt(56)).isEqualTo(3);
+        assertThat(week.columnAt(99)).isEqualTo(6);
+
+        assertThat(week.onTouchEvent(
+                MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 30, 5, 0))).isTrue();
+        // Cells are only shown pressed once the touch outlasts the tap timeout.
+        assertThat(week.getChildAt(2).isPressed()).isFalse();
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        assertThat(week.getChildAt(2).isPressed()).isTrue();
+        week.onTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, 30, 5, 0));
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        assertThat(week.getChildAt(2).isPressed()).isFalse();
+        assertThat(view.getSelectedDate()).isEqualTo(buildCal(2012, NOVEMBER, 20).getTime());
+    }
+
+    @Test
+    public void testClickingACellSelectsItsDate() throws Exception {
+        final MonthView month = (MonthView) view.getAdapter().getView(0, null, view);
+        // Accessibility services and keys click the cell itself: November 21st, 2012.
+        final CalendarRowView week = (CalendarRowView) month.grid.getChildAt(4);
+        assertThat(week.getChildAt(3).performClick()).isTrue();
+        assertThat(view.getSelectedDate()).isEqualTo(buildCal(2012, NOVEMBER, 21).getTime());
+    }
+
+    @Test
+    public void testMonthDecoratorsGetTheWholeMonth() throws Exception {
+        final List<Date> decoratedDates = new ArrayList<Date>();
+        view.setMonthDecorators(Arrays.<CalendarMonthDecorator>asList(
+                new CalendarMonthDecorator() {
+                    @Override
+                    public void decorate(MonthDescriptor month, List<Date> dates,
+                                         List<CalendarCellView> cellViews) {
+                        assertThat(cellViews).hasSameSizeAs(dates);
+                        decoratedDates.addAll(dates);
+                    }
+                }));
+        view.getAdapter().getView(0, null, view);
+        assertThat(decoratedDates).hasSize(35);
+        assertThat(decoratedDates.get(0)).isEqualTo(buildCal(2012, OCTOBER, 28).getTime());
+    }
+
+    @Test
+    public void testAsyncDecorationsOnlyApplyToTheMonthStillBound() throws Exception {
+        final List<Runnable> loads = new ArrayList<Runnable>();
+        final List<String> decorated = new ArrayList<String>();
+        view.setAsyncMonthDecorator(new AsyncCalendarMonthDecorator<String>() {
+            @Override
+            public void decoratePlaceholders(MonthDescriptor month, List<Date> dates,
+                                             List<CalendarCellView> cellViews) {
+            }
+
+            @Override
+            public String load(MonthDescriptor month, List<Date> dates) {
+                return month.getLabel();
+            }
+
+            @Override
+            public void decorate(MonthDescriptor month, List<Date> dates,
+                                 List<CalendarCellView> cellViews, String data) {
+                decorated.add(data);
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                loads.add(command);
+            }
+        });
+        final View month = view.getAdapter().getView(0, null, view);
+        // The view is recycled for December before November's data is loaded.
+        view.getAdapter().getView(1, month, view);
+        for (Runnable load : loads) {
+            load.run();
+        }
+        Robolectric.runUiThreadTasks();
+        assertThat(decorated).containsExactly("December 2012");
+    }
+
+    @Test
+    public void testInvalidatingADayKeepsLoadingTheRestOfTheMonth() throws Exception {
+        final List<Runnable> loads = new ArrayList<Runnable>();
+        final List<Integer> decorated = new ArrayList<Integer>();
+        view.setAsyncMonthDecorator(new AsyncCalendarMonthDecorator<String>() {
+            @Override
+            public void decoratePlaceholders(MonthDescriptor month, List<Date> dates,
+                                             List<CalendarCellView> cellViews) {
+            }
+
+            @Override
+            public String load(MonthDescriptor month, List<Date> dates) {
+                return month.getLabel();
+            }
+
+            @Override
+            public void decorate(MonthDescriptor month, List<Date> dates,
+                                 List<CalendarCellView> cellViews, String data) {
+                decorated.add(dates.size());
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                loads.add(command);
+            }
+        });
+        final View month = view.getAdapter().getView(0, null, view);
+        view.invalidateDecorations(Arrays.asList(buildCal(2012, NOVEMBER, 20).getTime()));
+        view.getAdapter().getView(0, month, view);
+        assertThat(loads).hasSize(2);
+        for (Runnable load : loads) {
+            load.run();
+        }
+        Robolectric.runUiThreadTasks();
+        // The first load still decorates the 34 other days, the second one November 20th.
+        assertThat(decorated).containsExactly(34, 1);
+    }
+
+    @Test
+    public void testLabelsAreFormattedOncePerLocale() throws Exception {
+        final CalendarLabels labels = CalendarLabels.forLocale(locale);
+        assertThat(CalendarLabels.forLocale(locale)).isSameAs(labels);
+        assertThat(labels.dayOfMonth(16)).isEqualTo("16");
+
+        final String[] weekdays =
+                labels.weekdays(new SimpleDateFormat("EEE", locale), Calendar.MONDAY, false);
+        assertThat(weekdays).containsExactly("Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun");
+        assertThat(labels.weekdays(new SimpleDateFormat("EEE", locale), Calendar.MONDAY, false))
+                .isSameAs(weekdays);
+    }
+
+    @Test
+    public void testLabelsKeepOnlyRecentMonthTitles() throws Exception {
+        final CalendarLabels labels = CalendarLabels.forLocale(locale);
+        final SimpleDateFormat format = new SimpleDateFormat("MMMM yyyy", locale);
+        final Date start = buildCal(2012, NOVEMBER, 1).getTime();
+        final String title = labels.monthTitle(format, 0, start);
+        assertThat(labels.monthTitle(format, 0, start)).isSameAs(title);
+
+        // An open-ended picker scrolled through a thousand years of months.
+        for (int monthKey = 1; monthKey <= 12000; monthKey++) {
+            labels.monthTitle(format, monthKey, start);
+        }
+        assertThat(labels.monthTitle(format, 0, start)).isNotSameAs(title).isEqualTo(title);
+    }
+
+    @Test
+    public void testBuildInBackgroundBuildsEveryMonth() throws Exception {
+        view.init(minDate, maxDate, locale) //
+                .inMode(SINGLE) //
+                .withSelectedDate(buildCal(2013, MAY, 5).getTime()) //
+                .buildInBackground(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                });
+
+        assertThat(view.controller.cells.size()).isEqualTo(13);
+        MonthCellDescriptor may5 = view.controller.cells.get(6).get(1).get(0);
+        assertThat(may5.getValue()).isEqualTo(5);
+        assertThat(may5.isSelectable()).isTrue();
+    }
+
+    @Test
+    public void testInvalidatingSelectableDatesDropsMonthsBeingBuilt() throws Exception {
+        final boolean[] selectable = {true};
+        view.setDateSelectableFilter(new CalendarPickerView.DateSelectableFilter() {
+            @Override
+            public boolean isDateSelectable(Date date) {
+                return selectable[0];
+            }
+        });
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        view.init(minDate, maxDate, locale) //
+                .inMode(SINGLE) //
+                .buildInBackground(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        tasks.add(command);
+                    }
+                });
+        // The task asks the filter before the dates are invalidated, but publishes after.
+        Robolectric.pauseMainLooper();
+        tasks.get(0).run();
+        selectable[0] = false;
+        view.invalidateSelectableDates(minDate, maxDate);
+        Robolectric.unPauseMainLooper();
+
+        assertThat(view.controller.cells.size()).isZero();
+        assertThat(getCells(DECEMBER, 2012).get(1).get(0).isSelectable()).isFalse();
+    }
+
+    @Test
+    public void testSelectionsAndHighlightsOnlyRebindTheMonthsShowingTheirDays() throws Exception {
+        final List<String> rebinds = new ArrayList<String>();
+        final CalendarPickerController controller = new CalendarPickerController(activity, null,
+                new CalendarPickerController.Host() {
+                    @Override
+                    public Context getContext() {
+                        return activity;
+                    }
+
+                    @Override
+                    public int getFirstBoundPosition() {
+                        return 0;
+                    }
+
+                    @Override
+                    public int getBoundCount() {
+                        // Every month is bound.
+                        return 13;
+                    }
+
+                    @Override
+                    public boolean rebindMonth(int position, int changes) {
+                        rebinds.add(position + ":" + changes);
+                        return true;
+                    }
+
+                    @Override
+                    public void refreshMonths() {
+                    }
+
+                    @Override
+                    public void scrollToMonth(int position, boolean smoothScroll) {
+                    }
+
+                    @Override
+                    public void prepareMonthView() {
+                    }
+
+                    @Override
+                    public boolean post(Runnable action) {
+                        action.run();
+                        return true;
+                    }
+                });
+        controller.init(minDate, maxDate, locale) //
+                .inMode(SINGLE) //
+                .withSelectedDate(buildCal(2012, NOVEMBER, 16).getTime());
+        rebinds.clear();
+
+        // November 16th is only shown by November, January 10th by January.
+        controller.selectDate(buildCal(2013, JANUARY, 10).getTime());
+        assertThat(rebinds).containsExactly("0:" + MonthView.CHANGE_SELECTION,
+                "2:" + MonthView.CHANGE_SELECTION);
+
+        // December 31st is also shown in the first week of January.
+        rebinds.clear();
+        controller.highlightDates(Arrays.asList(buildCal(2012, DECEMBER, 31).getTime()));
+        assertThat(rebinds).containsExactly("1:" + MonthView.CHANGE_HIGHLIGHT,
+                "2:" + MonthView.CHANGE_HIGHLIGHT);
+    }
+
+    @Test
+    public void testRangeAcrossMonthsDoesNotBuildSpannedMonths() throws Exception {
+        view.init(minDate, maxDate, locale) //
+                .inMode(RANGE);
+        view.selectDate(buildCal(2012, NOVEMBER, 28).getTime());
+        view.selectDate(buildCal(2013, JANUARY, 3).getTime());
+
+        assertThat(view.controller.cells.get(1)).isNull();
+        assertThat(view.controller.selectedDays.size()).isEqualTo(2);
+        assertThat(view.getSelectedDates()).hasSize(37);
+
+        List<List<MonthCellDescriptor>> cells = getCells(DECEMBER, 2012);
+        assertCell(cells, 0, 6, 1, true, true, false, true, MIDDLE);
+        assertCell(cells, 5, 1, 31, true, true, false, true, MIDDLE);
+    }
+
+    @Test
+    public void testDayCalendarAgreesWithCalendar() throws Exception {
+        // Daylight saving time starts and ends at midnight in Sao Paulo: some days have no
+        // midnight, others two.
+        final TimeZone timeZone = TimeZone.getTimeZone("America/Sao_Paulo");
+        final DayCalendar dayCalendar = new DayCalendar(timeZone, Calendar.MONDAY);
+        final Calendar cursor = Calendar.getInstance(TimeZone.getTimeZone("UTC"), locale);
+        cursor.clear();
+        cursor.set(1896, JANUARY, 1, 12, 0);
+        final Calendar cal = Calendar.getInstance(timeZone, locale);
+        int day = DayCalendar.toDay(1896, JANUARY, 1);
+        while (cursor.get(YEAR) < 2105) {
+            final int year = cursor.get(YEAR);
+            final int month = cursor.get(MONTH);
+            final int dayOfMonth = cursor.get(DAY_OF_MONTH);
+            cal.clear();
+            cal.set(year, month, dayOfMonth);
+            assertThat(DayCalendar.toDay(year, month, dayOfMonth)).isEqualTo(day);
+            assertThat(dayCalendar.toDay(cal.getTimeInMillis())).isEqualTo(day);
+            // The first instant of the day: where midnight happens twice, Calendar picks the
+            // second one.
+            final long millis = dayCalendar.toMillis(day);
+            assertThat(dayCalendar.toDay(millis)).isEqualTo(day);
+            assertThat(dayCalendar.toDay(millis - 1)).isEqualTo(day - 1);
+            assertThat(millis).isLessThanOrEqualTo(cal.getTimeInMillis());
+            assertThat(DayCalendar.monthKey(day)).isEqualTo(DayCalendar.monthKey(year, month));
+            assertThat(DayCalendar.dayOfMonth(day)).isEqualTo(dayOfMonth);
+            assertThat(DayCalendar.dayOfWeek(day)).isEqualTo(cal.get(DAY_OF_WEEK));
+            cursor.add(DATE, 1);
+            day++;
+        }
+
+        // February 2015 starts on a Sunday and has 28 days.
+        final int february2015 = DayCalendar.monthKey(2015, FEBRUARY);
+        assertThat(dayCalendar.gridStart(february2015))
+                .isEqualTo(DayCalendar.toDay(2015, JANUARY, 26));
+        assertThat(dayCalendar.weeksInGrid(february2015)).isEqualTo(5);
+        final DayCalendar sundayFirst = new DayCalendar(timeZone, Calendar.SUNDAY);
+        assertThat(sundayFirst.gridStart(february2015))
+                .isEqualTo(DayCalendar.toDay(2015, FEBRUARY, 1));
+        assertThat(sundayFirst.weeksInGrid(february2015)).isEqualTo(4);
     }
 
     @Test
@@ -357,7 +988,7 @@ public class CalendarPickerViewTest {
         view.init(feb1.getTime(), mar1.getTime(), locale) //
                 .inMode(SINGLE) //
                 .withSelectedDate(feb1.getTime());
-        assertThat(view.months).hasSize(1);
+        assertThat(view.controller.monthCount).isEqualTo(1);
     }
 
     @Test
@@ -391,14 +1022,14 @@ public class CalendarPickerViewTest {
         Calendar jumpToCal = buildCal(2013, FEBRUARY, 1);
         boolean wasAbleToSetDate = view.selectDate(jumpToCal.getTime());
         assertThat(wasAbleToSetDate).isTrue();
-        assertThat(view.selectedCells.get(0).isSelectable()).isTrue();
+        assertThat(view.getSelectedDate()).isEqualTo(jumpToCal.getTime());
     }
 
     @Test
     public void testMultiselectWithNoInitialSelections() throws Exception {
         view.init(minDate, maxDate, locale) //
                 .inMode(MULTIPLE);
-        assertThat(view.selectionMode).isEqualTo(MULTIPLE);
+        assertThat(view.controller.selectionMode).isEqualTo(MULTIPLE);
         assertThat(view.getSelectedDates()).isEmpty();
 
         view.selectDate(minDate);
@@ -410,6 +1041,88 @@ public class CalendarPickerViewTest {
         assertThat(view.getSelectedDates().get(1)).hasTime(secondSelection.getTimeInMillis());
     }
 
+    @Test
+    public void testMultiselectReselectingUnselectsAndKeepsDatesInOrder() throws Exception {
+        view.init(minDate, maxDate, locale) //
+                .inMode(MULTIPLE);
+        Calendar nov20 = buildCal(2012, NOVEMBER, 20);
+        Calendar nov17 = buildCal(2012, NOVEMBER, 17);
+        Calendar dec1 = buildCal(2012, DECEMBER, 1);
+        view.selectDate(nov20.getTime());
+        view.selectDate(dec1.getTime());
+        view.selectDate(nov17.getTime());
+        assertThat(view.getSelectedDates()).containsExactly(nov17.getTime(), nov20.getTime(),
+                dec1.getTime());
+
+        view.selectDate(nov20.getTime());
+        assertThat(view.getSelectedDates()).containsExactly(nov17.getTime(), dec1.getTime());
+        assertThat(getCells(NOVEMBER, 2012).get(3).get(2).isSelected()).isFalse();
+    }
+
+    @Test
+    public void testDaySetTracksItsFirstAndLastDays() throws Exception {
+        final DaySet days = new DaySet();
+        days.reset(1000);
+        final TreeSet<Integer> expected = new TreeSet<Integer>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            // Mostly adds at first, then mostly removes.
+            final int day = 1000 + random.nextInt(60);
+            if (random.nextInt(2000) > i) {
+                assertThat(days.add(day)).isEqualTo(expected.add(day));
+            } else {
+                assertThat(days.remove(day)).isEqualTo(expected.remove(day));
+            }
+            assertThat(days.size()).isEqualTo(expected.size());
+            assertThat(days.first())
+                    .isEqualTo(expected.isEmpty() ? DayCalendar.NO_DAY : expected.first());
+            assertThat(days.last())
+                    .isEqualTo(expected.isEmpty() ? DayCalendar.NO_DAY : expected.last());
+        }
+
+        days.add(1010);
+        days.add(1050);
+        final DaySet copy = new DaySet();
+        copy.copyFrom(days);
+        assertThat(copy.first()).isEqualTo(days.first());
+        assertThat(copy.last()).isEqualTo(days.last());
+        days.clear();
+        assertThat(days.first()).isEqualTo(DayCalendar.NO_DAY);
+        assertThat(days.last()).isEqualTo(DayCalendar.NO_DAY);
+    }
+
+    @Test
+    public void testBatchFilterIsAskedOncePerMonthUntilInvalidated() {
+        final int[] calls = new int[1];
+        view.setDateSelectableFilter(new CalendarPickerView.BatchDateSelectableFilter() {
+            @Override
+            public BitSet getSelectableDates(Date firstDate, int dayCount) {
+                calls[0]++;
+                // Everything but the first of the month.
+                BitSet selectable = new BitSet();
+                selectable.set(1, dayCount);
+                return selectable;
+            }
+
+            @Override
+            public boolean isDateSelectable(Date date) {
+                throw new AssertionError("Should only be asked in batches");
+            }
+        });
+        view.init(minDate, maxDate, locale) //
+                .inMode(SINGLE);
+        Calendar dec1 = buildCal(2012, DECEMBER, 1);
+        getCells(DECEMBER, 2012);
+        getCells(DECEMBER, 2012);
+        assertThat(view.selectDate(dec1.getTime())).isFalse();
+        assertThat(view.selectDate(buildCal(2012, DECEMBER, 2).getTime())).isTrue();
+        assertThat(calls[0]).isEqualTo(1);
+
+        view.invalidateSelectableDates(dec1.getTime(), dec1.getTime());
+        getCells(DECEMBER, 2012);
+        assertThat(calls[0]).isEqualTo(2);
+    }
+
     @Test
     public void testOnDateConfiguredListener() {
         final Calendar testCal = Calendar.getInstance(locale);
@@ -448,17 +1161,16 @@ public class CalendarPickerViewTest {
         MonthCellDescriptor cellToClick =
                 new MonthCellDescriptor(jumpToCal.getTime(), true, true, true, true, true, 0,
                         MonthCellDescriptor.RangeState.NONE);
-        view.listener.handleClick(cellToClick);
+        view.controller.listener.handleClick(cellToClick);
 
-        assertThat(view.selectedCals.get(0).get(DATE)).isEqualTo(jumpToCal.get(DATE));
+        assertThat(getSelectedDayOfMonth()).isEqualTo(jumpToCal.get(DATE));
     }
 
     @Test
     public void testRangeSelectionWithNoInitialSelection() throws Exception {
         view.init(minDate, maxDate, locale) //
                 .inMode(RANGE);
-        assertThat(view.selectedCals).hasSize(0);
-        assertThat(view.selectedCells).hasSize(0);
+        assertThat(view.controller.selectedDays.isEmpty()).isTrue();
 
         Calendar nov18 = buildCal(2012, NOVEMBER, 18);
         view.selectDate(nov18.getTime());
@@ -476,8 +1188,7 @@ public class CalendarPickerViewTest {
         view.init(minDate, maxDate, locale) //
                 .inMode(SINGLE);
 
-        assertThat(view.highlightedCals).hasSize(0);
-        assertThat(view.highlightedCells).hasSize(0);
+        assertThat(view.controller.highlightedDays.isEmpty()).isTrue();
     }
 
     @Test
@@ -488,13 +1199,33 @@ public class CalendarPickerViewTest {
                 .inMode(SINGLE)
                 .withHighlightedDate(highlightedCal.getTime());
 
-        assertThat(view.highlightedCals).hasSize(1);
-        assertThat(view.highlightedCells).hasSize(1);
+        assertThat(view.controller.highlightedDays.size()).isEqualTo(1);
 
         List<List<MonthCellDescriptor>> cells = getCells(NOVEMBER, 2012);
         assertThat(cells.get(3).get(2).isHighlighted()).isTrue();
     }
 
+    @Test
+    public void testSetHighlightedDatesReplacesHighlights() {
+        final Calendar nov20 = buildCal(2012, NOVEMBER, 20);
+        final Calendar nov21 = buildCal(2012, NOVEMBER, 21);
+        final Calendar dec3 = buildCal(2012, DECEMBER, 3);
+
+        view.init(minDate, maxDate, locale)
+                .inMode(SINGLE)
+                .withHighlightedDate(nov20.getTime());
+        view.setHighlightedDates(Arrays.asList(nov21.getTime(), dec3.getTime()));
+
+        assertThat(view.controller.highlightedDays.size()).isEqualTo(2);
+        List<List<MonthCellDescriptor>> cells = getCells(NOVEMBER, 2012);
+        assertThat(cells.get(3).get(2).isHighlighted()).isFalse();
+        assertThat(cells.get(3).get(3).isHighlighted()).isTrue();
+
+        view.clearHighlightedDates();
+        assertThat(view.controller.highlightedDays.isEmpty()).isTrue();
+        assertThat(getCells(NOVEMBER, 2012).get(3).get(3).isHighlighted()).isFalse();
+    }
+
     private void assertRangeSelectionBehavior() {
         // Start a new range in the middle of the current (Nov 18 - Nov 24) one.
         Calendar nov20 = buildCal(2012, NOVEMBER, 20);
@@ -545,15 +1276,33 @@ public class CalendarPickerViewTest {
         assertRangeSelectionBehavior();
     }
 
+    @Test
+    public void testPickingTheRangeStartAgainEndsTheRange() throws Exception {
+        Calendar nov18 = buildCal(2012, NOVEMBER, 18);
+        Calendar nov24 = buildCal(2012, NOVEMBER, 24);
+        view.init(minDate, maxDate, locale) //
+                .inMode(RANGE);
+
+        view.selectDate(nov18.getTime());
+        view.selectDate(nov18.getTime());
+        assertOneDateSelected();
+
+        // The one-day range is done: the next pick starts a new range.
+        view.selectDate(nov24.getTime());
+        assertOneDateSelected();
+        assertThat(view.getSelectedDate()).isEqualTo(nov24.getTime());
+
+        view.selectDate(buildCal(2012, NOVEMBER, 30).getTime());
+        assertThat(view.getSelectedDates()).hasSize(7);
+    }
+
     private void assertRangeSelected() {
-        assertThat(view.selectedCals).hasSize(2);
-        assertThat(view.selectedCells).hasSize(7);
+        assertThat(view.controller.selectedDays.size()).isEqualTo(2);
         assertThat(view.getSelectedDates()).hasSize(7);
     }
 
     private void assertOneDateSelected() {
-        assertThat(view.selectedCals).hasSize(1);
-        assertThat(view.selectedCells).hasSize(1);
+        assertThat(view.controller.selectedDays.size()).isEqualTo(1);
         assertThat(view.getSelectedDates()).hasSize(1);
     }
 
@@ -573,15 +1322,84 @@ public class CalendarPickerViewTest {
 
         List<List<MonthCellDescriptor>> cells = getCells(NOVEMBER, 2012);
         assertCell(cells, 2, 6, 17, true, true, false, true, FIRST);
-        assertCell(cells, 3, 0, 18, true, false, false, true, MIDDLE);
-        assertCell(cells, 3, 1, 19, true, false, false, true, MIDDLE);
-        assertCell(cells, 3, 2, 20, true, false, false, true, MIDDLE);
-        assertCell(cells, 3, 3, 21, true, false, false, true, MIDDLE);
-        assertCell(cells, 3, 4, 22, true, false, false, true, MIDDLE);
-        assertCell(cells, 3, 5, 23, true, false, false, true, MIDDLE);
+        assertCell(cells, 3, 0, 18, true, true, false, true, MIDDLE);
+        assertCell(cells, 3, 1, 19, true, true, false, true, MIDDLE);
+        assertCell(cells, 3, 2, 20, true, true, false, true, MIDDLE);
+        assertCell(cells, 3, 3, 21, true, true, false, true, MIDDLE);
+        assertCell(cells, 3, 4, 22, true, true, false, true, MIDDLE);
+        assertCell(cells, 3, 5, 23, true, true, false, true, MIDDLE);
         assertCell(cells, 3, 6, 24, true, true, false, true, LAST);
     }
 
+    @Test
+    public void testDraggingARange() throws Exception {
+        view.init(minDate, maxDate, locale) //
+                .inMode(RANGE);
+        final MonthCellDescriptor start = getCells(NOVEMBER, 2012).get(3).get(2);
+        assertThat(view.controller.startRangeDrag(start)).isTrue();
+        assertThat(view.getSelectedDates()).containsExactly(start.getDate());
+
+        view.controller.dragRangeTo(getCells(DECEMBER, 2012).get(0).get(6));
+        assertThat(view.getSelectedDates()).hasSize(12);
+        assertCell(getCells(NOVEMBER, 2012), 3, 2, 20, true, true, false, true, FIRST);
+        assertCell(getCells(DECEMBER, 2012), 0, 6, 1, true, true, false, true, LAST);
+
+        // Dragging back past the start makes it the last day of the range.
+        view.controller.dragRangeTo(getCells(NOVEMBER, 2012).get(2).get(6));
+        view.controller.endRangeDrag();
+        final List<List<MonthCellDescriptor>> cells = getCells(NOVEMBER, 2012);
+        assertCell(cells, 2, 6, 17, true, true, false, true, FIRST);
+        assertCell(cells, 3, 1, 19, true, true, false, true, MIDDLE);
+        assertCell(cells, 3, 2, 20, true, true, false, true, LAST);
+        assertCell(cells, 3, 3, 21, true, false, false, true, NONE);
+        assertThat(view.getSelectedDates()).hasSize(4);
+    }
+
+    @Test
+    public void testMultiRangeMergesRanges() throws Exception {
+        view.init(minDate, maxDate, locale) //
+                .inMode(MULTI_RANGE) //
+                .withSelectedDates(Arrays.asList(buildCal(2012, NOVEMBER, 28).getTime(),
+                        buildCal(2012, NOVEMBER, 29).getTime()));
+        view.selectDate(buildCal(2012, NOVEMBER, 17).getTime());
+        view.selectDate(buildCal(2012, NOVEMBER, 19).getTime());
+        view.selectDate(buildCal(2012, NOVEMBER, 24).getTime());
+        view.selectDate(buildCal(2012, NOVEMBER, 21).getTime());
+        assertThat(view.getSelectedRanges()).hasSize(3);
+        assertCell(getCells(NOVEMBER, 2012), 3, 2, 20, true, false, false, true, NONE);
+
+        // Selecting the day in between twice fills the gap between the first two ranges.
+        view.selectDate(buildCal(2012, NOVEMBER, 20).getTime());
+        view.selectDate(buildCal(2012, NOVEMBER, 20).getTime());
+        final List<List<Date>> ranges = view.getSelectedRanges();
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(0)).hasSize(8);
+        List<List<MonthCellDescriptor>> cells = getCells(NOVEMBER, 2012);
+        assertCell(cells, 2, 6, 17, true, true, false, true, FIRST);
+        assertCell(cells, 3, 2, 20, true, true, false, true, MIDDLE);
+        assertCell(cells, 3, 6, 24, true, true, false, true, LAST);
+        assertCell(cells, 4, 3, 28, true, true, false, true, FIRST);
+
+        // Selecting a day of a range unselects the whole range.
+        assertThat(view.selectDate(buildCal(2012, NOVEMBER, 22).getTime())).isFalse();
+        assertThat(view.getSelectedDates()).containsExactly(buildCal(2012, NOVEMBER, 28).getTime(),
+                buildCal(2012, NOVEMBER, 29).getTime());
+        cells = getCells(NOVEMBER, 2012);
+        assertCell(cells, 3, 2, 20, true, false, false, true, NONE);
+    }
+
+    @Test
+    public void testMultiRangeSkipsInitialDatesOutOfRange() throws Exception {
+        final Date nov20 = buildCal(2012, NOVEMBER, 20).getTime();
+        view.init(minDate, maxDate, locale) //
+                .inMode(MULTI_RANGE) //
+                .ignoreValidatingDates(true) //
+                .withSelectedDates(Arrays.asList(buildCal(2012, OCTOBER, 1).getTime(), nov20,
+                        buildCal(2014, JANUARY, 1).getTime()));
+        assertThat(view.getSelectedRanges()).hasSize(1);
+        assertThat(view.getSelectedDates()).containsExactly(nov20);
+    }
+
     @Test
     public void testLocaleSetting() throws Exception {
         view.init(minDate, maxDate, Locale.GERMAN);
@@ -629,6 +1447,31 @@ public class CalendarPickerViewTest {
         assertCell(cells, 5, 0, 30, true, false, false, true, NONE);
     }
 
+    @Test
+    public void testSelectingADateSelectsItsCellWhateverTheFirstDayOfWeek() throws Exception {
+        for (Locale weekLocale : Arrays.asList(Locale.US, new Locale("en", "GB"))) {
+            view.init(minDate, maxDate, weekLocale) //
+                    .inMode(SINGLE);
+            // The first and last days, the ends of months and both ends of a week.
+            for (Calendar date : Arrays.asList(buildCal(2012, NOVEMBER, 16),
+                    buildCal(2012, DECEMBER, 1), buildCal(2012, DECEMBER, 31),
+                    buildCal(2013, MARCH, 3), buildCal(2013, MARCH, 4),
+                    buildCal(2013, NOVEMBER, 15))) {
+                assertThat(view.selectDate(date.getTime())).isTrue();
+                final List<Date> selected = new ArrayList<Date>();
+                for (List<MonthCellDescriptor> week
+                        : getCells(date.get(MONTH), date.get(YEAR))) {
+                    for (MonthCellDescriptor cell : week) {
+                        if (cell.isSelected()) {
+                            selected.add(cell.getDate());
+                        }
+                    }
+                }
+                assertThat(selected).containsExactly(date.getTime());
+            }
+        }
+    }
+
     @Test
     public void testSetShortWeekdays() throws Exception {
         String[] capitalDays = {"", "S", "M", "T", "W", "T", "F", "S"};
@@ -666,16 +1509,16 @@ public class CalendarPickerViewTest {
         MonthCellDescriptor cellToClick =
                 new MonthCellDescriptor(jumpToCal.getTime(), true, true, true, true, true, 0,
                         MonthCellDescriptor.RangeState.NONE);
-        view.listener.handleClick(cellToClick);
+        view.controller.listener.handleClick(cellToClick);
 
-        assertThat(view.selectedCals.get(0).get(DATE)).isEqualTo(17);
+        assertThat(getSelectedDayOfMonth()).isEqualTo(17);
 
         jumpToCal.set(DAY_OF_MONTH, 18);
         cellToClick = new MonthCellDescriptor(jumpToCal.getTime(), true, true, true, true, true, 0,
                 MonthCellDescriptor.RangeState.NONE);
-        view.listener.handleClick(cellToClick);
+        view.controller.listener.handleClick(cellToClick);
 
-        assertThat(view.selectedCals.get(0).get(DATE)).isEqualTo(17);
+        assertThat(getSelectedDayOfMonth()).isEqualTo(17);
     }
 
     private static void assertCell(List<List<MonthCellDescriptor>> cells, int row, int col,
@@ -691,6 +1534,26 @@ public class CalendarPickerViewTest {
         assertThat(cell.getRangeState()).isEqualTo(expectedRangeState);
     }
 
+    /**
+     * Runs the main thread's idle handlers until they're all done: Robolectric doesn't.
+     */
+    @SuppressWarnings("unchecked")
+    private static void runIdleHandlers() throws Exception {
+        final Field field = MessageQueue.class.getDeclaredField("mIdleHandlers");
+        field.setAccessible(true);
+        final List<MessageQueue.IdleHandler> handlers =
+                (List<MessageQueue.IdleHandler>) field.get(Looper.myQueue());
+        while (!handlers.isEmpty()) {
+            final List<MessageQueue.IdleHandler> idle =
+                    new ArrayList<MessageQueue.IdleHandler>(handlers);
+            for (MessageQueue.IdleHandler handler : idle) {
+                if (!handler.queueIdle()) {
+                    handlers.remove(handler);
+                }
+            }
+        }
+    }
+
     private List<List<MonthCellDescriptor>> selectDateAndGetCells(int month, int year,
                                                                   Calendar selectedDate) {
         view.selectDate(selectedDate.getTime());
@@ -702,7 +1565,14 @@ public class CalendarPickerViewTest {
         cal.set(DAY_OF_MONTH, 1);
         cal.set(YEAR, year);
         cal.set(MONTH, month);
-        return view.getMonthCells(new MonthDescriptor(month, year, cal.getTime(), "January 2012"), cal);
+        return view.controller.getMonthCells(
+                new MonthDescriptor(month, year, cal.getTime(), "January 2012"));
+    }
+
+    private int getSelectedDayOfMonth() {
+        Calendar selected = Calendar.getInstance(locale);
+        selected.setTime(view.getSelectedDate());
+        return selected.get(DATE);
     }
 
     private Calendar buildCal(int year, @MagicConstant(intValues = {
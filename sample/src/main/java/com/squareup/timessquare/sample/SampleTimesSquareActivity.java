@@ -17,6 +17,7 @@ import com.squareup.timessquare.CalendarPickerView;
 import com.squareup.timessquare.CalendarPickerView.SelectionMode;
 import com.squareup.timessquare.DefaultDayViewAdapter;
 import com.squareup.timessquare.HigherPeakDate;
+import com.squareup.timessquare.MonthViewPool;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -35,6 +36,7 @@ public class SampleTimesSquareActivity extends Activity {
     private CalendarPickerView calendar;
     private AlertDialog theDialog;
     private CalendarPickerView dialogView;
+    private final MonthViewPool dialogMonthViews = new MonthViewPool();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,6 +54,13 @@ public class SampleTimesSquareActivity extends Activity {
                 .inMode(SelectionMode.SINGLE) //
                 .withSelectedDate(new Date());
 
+        // Have month views ready for the plain dialog, so it opens without inflating them.
+        final CalendarPickerView warmUp =
+                (CalendarPickerView) getLayoutInflater().inflate(R.layout.dialog, null, false);
+        warmUp.init(lastYear.getTime(), nextYear.getTime());
+        warmUp.setMonthViewPool(dialogMonthViews);
+        warmUp.prepareMonthViews(3);
+
         initButtonListeners(nextYear, lastYear);
     }
 
@@ -227,6 +236,7 @@ public class SampleTimesSquareActivity extends Activity {
 
     private void showCalendarInDialog(String title, int layoutResId) {
         dialogView = (CalendarPickerView) getLayoutInflater().inflate(layoutResId, null, false);
+        dialogView.setMonthViewPool(dialogMonthViews);
         theDialog = new AlertDialog.Builder(this) //
                 .setTitle(title)
                 .setView(dialogView)